@@ -0,0 +1,127 @@
+import java.time.LocalDate;
+import java.util.*;
+
+// 基准测试用的合成数据：按借阅记录数 scale 生成图书、成员和借阅记录，同一 seed 生成的数据完全相同
+// 图书数为 scale/10，成员数为 scale/20（都至少 100 个）；约 5% 的记录未归还
+public class BenchmarkData {
+    private static final String[] SYLLABLES = {
+            "an", "ber", "cal", "dor", "el", "fin", "gar", "hol", "is", "jan", "kel", "lor", "mar", "nor",
+            "os", "pel", "quin", "ros", "sar", "tan", "ul", "ven", "wil", "xan", "yor", "zel"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Alice", "Bob", "Carol", "David", "Emma", "Frank", "Grace", "Henry", "Iris", "Jack",
+            "Kate", "Leo", "Mia", "Noah", "Olivia", "Paul", "Quinn", "Rose", "Sam", "Tina"
+    };
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final Library library;
+    private final List<Book> books;
+    private final List<Member> members;
+    private final String[] vocabulary;
+
+    private BenchmarkData(Library library, List<Book> books, List<Member> members, String[] vocabulary) {
+        this.library = library;
+        this.books = books;
+        this.members = members;
+        this.vocabulary = vocabulary;
+    }
+
+    public static BenchmarkData generate(int scale, long seed) {
+        Random random = new Random(seed);
+        String[] vocabulary = vocabulary(random, 2000);
+
+        int bookCount = Math.max(100, scale / 10);
+        int memberCount = Math.max(100, scale / 20);
+        Library library = new Library();
+
+        List<Book> books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            String id = "B" + (i + 1);
+            String title = words(random, vocabulary, 2 + random.nextInt(3));
+            String author = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + capitalize(words(random, vocabulary, 1));
+            Book book = random.nextInt(5) == 0
+                    ? new EBook(id, title, author)
+                    : new PrintedBook(id, title, author, 1 + random.nextInt(5));
+            library.addBook(book);
+            books.add(book);
+        }
+
+        List<Member> members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            Member member = new Member(1000 + i, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + i);
+            library.addMember(member);
+            members.add(member);
+        }
+
+        // 未归还的成员-图书组合不能重复，且不能超过图书的副本数
+        Set<Long> activePairs = new HashSet<>();
+        for (int i = 0; i < scale; i++) {
+            Book book = books.get(random.nextInt(bookCount));
+            Member member = members.get(random.nextInt(memberCount));
+            LocalDate borrowDate = TODAY.minusDays(random.nextInt(730));
+
+            boolean returned = true;
+            if (random.nextInt(20) == 0 && book.canBorrow()
+                    && activePairs.add(pairKey(member.getId(), book.getOrdinal()))) {
+                returned = false;
+            }
+            library.loadRecord(book.getId(), member.getId(), borrowDate, borrowDate.plusWeeks(2), returned);
+        }
+        library.finishLoad(-1);
+
+        return new BenchmarkData(library, books, members, vocabulary);
+    }
+
+    public Library getLibrary() {
+        return library;
+    }
+
+    public Book randomBook(Random random) {
+        return books.get(random.nextInt(books.size()));
+    }
+
+    public Member randomMember(Random random) {
+        return members.get(random.nextInt(members.size()));
+    }
+
+    // 标题搜索的关键字：一半是完整的词，一半是 1~3 个字母的片段
+    public String randomKeyword(Random random) {
+        String word = vocabulary[random.nextInt(vocabulary.length)];
+        if (random.nextBoolean()) {
+            return word;
+        }
+        int length = Math.min(word.length(), 1 + random.nextInt(3));
+        int start = random.nextInt(word.length() - length + 1);
+        return word.substring(start, start + length);
+    }
+
+    private static String[] vocabulary(Random random, int size) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < size) {
+            StringBuilder sb = new StringBuilder();
+            int syllables = 2 + random.nextInt(2);
+            for (int i = 0; i < syllables; i++) {
+                sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(sb.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static String words(Random random, String[] vocabulary, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(capitalize(vocabulary[random.nextInt(vocabulary.length)]));
+        }
+        return sb.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static long pairKey(int memberId, int bookOrdinal) {
+        return ((long) memberId << 32) | bookOrdinal;
+    }
+}
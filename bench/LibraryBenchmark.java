@@ -0,0 +1,350 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Library 热点路径的基准测试，输出格式与 JMH 的 -rf json 相同，可以用同样的工具比较两次结果：
+//   javac -encoding UTF-8 -d out src/*.java bench/*.java
+//   java -Xmx4g -cp out LibraryBenchmark --scales 1000,10000,100000 --out bench-results.json
+// 参数：
+//   --scales      借阅记录数，逗号分隔（默认 1000,10000,100000；10^7 需要约 8g 堆）
+//   --only        只运行这些基准测试，逗号分隔
+//   --warmup      预热轮数（默认 3）
+//   --iterations  测量轮数（默认 5）
+//   --time        每轮的最短时间，毫秒（默认 500）
+//   --out         JSON 结果文件（默认 bench-results.json）
+// 每轮重复调用基准测试直到达到最短时间，before/after 中的准备工作不计时
+// 除耗时外还记录每次操作分配的字节数（当前线程）和测量期间的 GC 次数与耗时，对应 JMH 的 -prof gc
+public class LibraryBenchmark {
+    private static final long SEED = 42;
+    private static final int LOAN_BATCH = 1000;
+    private static final int SEARCH_BATCH = 100;
+    private static final int RANKING_BATCH = 1000;
+
+    // 防止结果未被使用而被 JIT 消除
+    private static volatile long sink;
+
+    private interface Benchmark {
+        default void before() {
+        }
+
+        // 执行一次，返回完成的操作数
+        int invoke() throws Exception;
+
+        default void after() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int[] scales = Arrays.stream(options.getOrDefault("scales", "1000,10000,100000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        Set<String> only = options.containsKey("only")
+                ? new HashSet<>(Arrays.asList(options.get("only").split(","))) : null;
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "3"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        long iterationNanos = Long.parseLong(options.getOrDefault("time", "500")) * 1_000_000L;
+        Path out = Paths.get(options.getOrDefault("out", "bench-results.json"));
+
+        PrintStream console = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+        List<String> results = new ArrayList<>();
+        Path dir = Files.createTempDirectory("library-bench");
+
+        try {
+            for (int scale : scales) {
+                console.printf("# scale=%d: 生成数据...%n", scale);
+                BenchmarkData data = BenchmarkData.generate(scale, SEED);
+                Path dataFile = dir.resolve("library_" + scale + ".txt");
+                Path saveFile = dir.resolve("save_" + scale + ".txt");
+                System.setOut(quiet);
+                data.getLibrary().saveToFile(dataFile.toString());
+                System.setOut(console);
+
+                Map<String, Benchmark> benchmarks = benchmarks(data, dataFile, saveFile);
+                for (Map.Entry<String, Benchmark> entry : benchmarks.entrySet()) {
+                    if (only != null && !only.contains(entry.getKey())) continue;
+
+                    // Library 的提示信息不输出到控制台
+                    System.setOut(quiet);
+                    Result result;
+                    try {
+                        result = run(entry.getValue(), warmup, iterations, iterationNanos);
+                    } finally {
+                        System.setOut(console);
+                    }
+                    console.printf("%-28s scale=%-9d %12.3f ± %.3f us/op %12.1f B/op%n",
+                            entry.getKey(), scale, result.mean(), result.error(), result.allocPerOp);
+                    results.add(result.toJson(entry.getKey(), scale, warmup, iterations));
+                }
+            }
+        } finally {
+            deleteAll(dir);
+        }
+
+        Files.write(out, ("[\n" + String.join(",\n", results) + "\n]\n").getBytes(StandardCharsets.UTF_8));
+        console.println("# 结果已写入 " + out.toAbsolutePath() + " (sink=" + sink + ")");
+    }
+
+    private static Map<String, Benchmark> benchmarks(BenchmarkData data, Path dataFile, Path saveFile) {
+        Library library = data.getLibrary();
+        Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+
+        benchmarks.put("searchBooksByTitle", new Benchmark() {
+            private final Random random = new Random(SEED + 2);
+            private final String[] keywords = new String[SEARCH_BATCH];
+
+            @Override
+            public void before() {
+                for (int i = 0; i < SEARCH_BATCH; i++) {
+                    keywords[i] = data.randomKeyword(random);
+                }
+            }
+
+            @Override
+            public int invoke() {
+                long h = 0;
+                for (String keyword : keywords) {
+                    h += library.searchBooksByTitle(keyword).size();
+                }
+                sink += h;
+                return SEARCH_BATCH;
+            }
+        });
+
+        benchmarks.put("listBooksSortedByTitle", () -> {
+            sink += library.listBooksSortedByTitle().size();
+            return 1;
+        });
+
+        benchmarks.put("listBooksSortedByAuthor", () -> {
+            sink += library.listBooksSortedByAuthor().size();
+            return 1;
+        });
+
+        benchmarks.put("findMostActiveBorrower", () -> {
+            long h = 0;
+            for (int i = 0; i < RANKING_BATCH; i++) {
+                Member member = library.findMostActiveBorrower();
+                h += member == null ? 0 : member.getId();
+            }
+            sink += h;
+            return RANKING_BATCH;
+        });
+
+        // 加载使用多个解析线程，分配字节数只统计调用线程，需结合 GC 指标判断
+        benchmarks.put("loadFromFile", () -> {
+            Library loaded = new Library();
+            loaded.loadFromFile(dataFile.toString());
+            sink += loaded.getBookCount();
+            return 1;
+        });
+
+        benchmarks.put("saveToFile", () -> {
+            library.saveToFile(saveFile.toString());
+            return 1;
+        });
+
+        // 借还会不断增加借阅历史，放在最后，避免改变前面的基准测试（尤其是 saveToFile）的数据规模
+        // 借书：计时的是借书本身，借成功的书在 after 中还回去，保持库存不变
+        benchmarks.put("borrowBook", new Benchmark() {
+            private final Random random = new Random(SEED);
+            private final int[] memberIds = new int[LOAN_BATCH];
+            private final String[] bookIds = new String[LOAN_BATCH];
+            private final boolean[] borrowed = new boolean[LOAN_BATCH];
+
+            @Override
+            public void before() {
+                for (int i = 0; i < LOAN_BATCH; i++) {
+                    memberIds[i] = data.randomMember(random).getId();
+                    bookIds[i] = data.randomBook(random).getId();
+                }
+            }
+
+            @Override
+            public int invoke() {
+                long h = 0;
+                for (int i = 0; i < LOAN_BATCH; i++) {
+                    LoanResult result = library.borrowBook(memberIds[i], bookIds[i]);
+                    borrowed[i] = result.isSuccess();
+                    h += result.getStatus().ordinal();
+                }
+                sink += h;
+                return LOAN_BATCH;
+            }
+
+            @Override
+            public void after() {
+                for (int i = 0; i < LOAN_BATCH; i++) {
+                    if (borrowed[i]) {
+                        library.returnBook(memberIds[i], bookIds[i]);
+                    }
+                }
+            }
+        });
+
+        // 还书：在 before 中借出，计时的是还书
+        benchmarks.put("returnBook", new Benchmark() {
+            private final Random random = new Random(SEED + 1);
+            private final int[] memberIds = new int[LOAN_BATCH];
+            private final String[] bookIds = new String[LOAN_BATCH];
+
+            @Override
+            public void before() {
+                for (int i = 0; i < LOAN_BATCH; i++) {
+                    memberIds[i] = data.randomMember(random).getId();
+                    bookIds[i] = data.randomBook(random).getId();
+                    library.borrowBook(memberIds[i], bookIds[i]);
+                }
+            }
+
+            @Override
+            public int invoke() {
+                long h = 0;
+                for (int i = 0; i < LOAN_BATCH; i++) {
+                    h += library.returnBook(memberIds[i], bookIds[i]).getStatus().ordinal();
+                }
+                sink += h;
+                return LOAN_BATCH;
+            }
+        });
+
+        return benchmarks;
+    }
+
+    private static Result run(Benchmark benchmark, int warmup, int iterations, long iterationNanos) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            iteration(benchmark, iterationNanos);
+        }
+
+        Result result = new Result(iterations);
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] iteration = iteration(benchmark, iterationNanos);
+            result.scores[i] = iteration[1] / 1000.0 / iteration[0];
+            totalOps += iteration[0];
+            totalBytes += iteration[2];
+        }
+        result.allocPerOp = (double) totalBytes / totalOps;
+        result.gcCount = gcCount() - gcCount;
+        result.gcTime = gcTime() - gcTime;
+        return result;
+    }
+
+    // 返回 {操作数, 计时纳秒数, 分配字节数}
+    private static long[] iteration(Benchmark benchmark, long iterationNanos) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        while (nanos < iterationNanos) {
+            benchmark.before();
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            ops += benchmark.invoke();
+            nanos += System.nanoTime() - start;
+            bytes += threads.getThreadAllocatedBytes(threadId) - allocated;
+            benchmark.after();
+        }
+        return new long[]{ops, nanos, bytes};
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static final class Result {
+        private final double[] scores; // 每轮的 us/op
+        private double allocPerOp;
+        private long gcCount;
+        private long gcTime;
+
+        Result(int iterations) {
+            this.scores = new double[iterations];
+        }
+
+        double mean() {
+            return Arrays.stream(scores).average().orElse(Double.NaN);
+        }
+
+        // 99.9% 置信区间的半宽（按正态分布近似）
+        double error() {
+            if (scores.length < 2) return Double.NaN;
+            double mean = mean();
+            double sum = 0;
+            for (double score : scores) {
+                sum += (score - mean) * (score - mean);
+            }
+            return 3.291 * Math.sqrt(sum / (scores.length - 1)) / Math.sqrt(scores.length);
+        }
+
+        String toJson(String name, int scale, int warmup, int iterations) {
+            StringBuilder raw = new StringBuilder();
+            for (int i = 0; i < scores.length; i++) {
+                if (i > 0) raw.append(", ");
+                raw.append(number(scores[i]));
+            }
+            return "  {\n"
+                    + "    \"benchmark\": \"LibraryBenchmark." + name + "\",\n"
+                    + "    \"mode\": \"avgt\",\n"
+                    + "    \"threads\": 1,\n"
+                    + "    \"warmupIterations\": " + warmup + ",\n"
+                    + "    \"measurementIterations\": " + iterations + ",\n"
+                    + "    \"params\": {\"scale\": \"" + scale + "\"},\n"
+                    + "    \"primaryMetric\": {\n"
+                    + "      \"score\": " + number(mean()) + ",\n"
+                    + "      \"scoreError\": " + number(error()) + ",\n"
+                    + "      \"scoreUnit\": \"us/op\",\n"
+                    + "      \"rawData\": [[" + raw + "]]\n"
+                    + "    },\n"
+                    + "    \"secondaryMetrics\": {\n"
+                    + "      \"·gc.alloc.rate.norm\": {\"score\": " + number(allocPerOp) + ", \"scoreUnit\": \"B/op\"},\n"
+                    + "      \"·gc.count\": {\"score\": " + gcCount + ", \"scoreUnit\": \"counts\"},\n"
+                    + "      \"·gc.time\": {\"score\": " + gcTime + ", \"scoreUnit\": \"ms\"}\n"
+                    + "    }\n"
+                    + "  }";
+        }
+
+        private static String number(double value) {
+            return Double.isFinite(value) ? String.format(Locale.ROOT, "%.6f", value) : "\"NaN\"";
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+}
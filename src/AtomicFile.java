@@ -0,0 +1,51 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// 安全地整体替换文件：先写同目录下的临时文件并刷盘，再原子地改名覆盖目标文件
+// 写入中途失败或崩溃时目标文件保持原样，读者只会看到旧文件或完整的新文件
+// 改名后再对所在目录刷盘，返回时改名本身也已持久，调用者之后可以安全地删除旧数据（如压缩日志）
+public class AtomicFile {
+    public interface Content {
+        // 写入全部内容并 flush，不要关闭 channel
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    public static void write(Path target, Content content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                content.writeTo(channel);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.toAbsolutePath().getParent());
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    // Windows 不能以通道打开目录，此时跳过（NTFS 的改名由文件系统日志保证）；打开后刷盘失败照常抛出
+    private static void syncDirectory(Path dir) throws IOException {
+        if (dir == null) return;
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel c = channel) {
+            c.force(true);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+
+// 二进制快照格式（版本 1），所有整数为大端序：
+//   魔数 "LIBS" | 版本 int | 日志序号 long
+//   字符串表：数量 int，每项 长度 varint + UTF-8 字节（ID、标题、作者、姓名去重后共用）
+//   图书：数量 int，每本 ID序号/标题序号/作者序号/总副本数 各一个 varint，之后是类型位图（1=电子书）
+//   成员：数量 int，每个 成员ID int + 姓名序号 varint
+//   借阅记录：数量 int，每条 图书下标 varint + 成员ID int + 借阅日(epoch day) int + 应还日与借阅日之差 varint，
+//           之后是归还位图（1=已归还）
+public class BinarySnapshot {
+    private static final int MAGIC = 0x4C494253; // "LIBS"
+    private static final int VERSION = 1;
+
+    public static void write(Library library, Path file) throws IOException {
+        // 一致快照：记录引用的图书和成员都在快照中；记录视图逐行读取，不整体复制
+        library.loadHistory();
+        LibrarySnapshot snapshot = library.snapshot();
+        List<BorrowRecord> records = snapshot.getRecords();
+        List<Book> books = snapshot.getBooks();
+        List<Member> members = snapshot.getMembers();
+
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        Map<String, Integer> bookIndex = new HashMap<>();
+        for (Book book : books) {
+            bookIndex.put(book.getId(), bookIndex.size());
+            intern(strings, book.getId());
+            intern(strings, book.getTitle());
+            intern(strings, book.getAuthor());
+        }
+        for (Member member : members) {
+            intern(strings, member.getName());
+        }
+
+        // 写临时文件后原子替换，写到一半失败时原快照不受影响
+        AtomicFile.write(file, channel -> {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.getJournalSeq());
+
+            out.writeInt(strings.size());
+            for (String s : strings.keySet()) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(out, bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(books.size());
+            BitSet ebooks = new BitSet(books.size());
+            int i = 0;
+            for (Book book : books) {
+                writeVarInt(out, strings.get(book.getId()));
+                writeVarInt(out, strings.get(book.getTitle()));
+                writeVarInt(out, strings.get(book.getAuthor()));
+                if (book instanceof EBook) {
+                    ebooks.set(i);
+                    writeVarInt(out, 0);
+                } else {
+                    writeVarInt(out, book.getTotalCopies());
+                }
+                i++;
+            }
+            writeBits(out, ebooks, books.size());
+
+            out.writeInt(members.size());
+            for (Member member : members) {
+                out.writeInt(member.getId());
+                writeVarInt(out, strings.get(member.getName()));
+            }
+
+            out.writeInt(records.size());
+            BitSet returned = new BitSet(records.size());
+            i = 0;
+            for (BorrowRecord record : records) {
+                int borrowDay = (int) record.getBorrowDate().toEpochDay();
+                writeVarInt(out, bookIndex.get(record.getBook().getId()));
+                out.writeInt(record.getMemberId());
+                out.writeInt(borrowDay);
+                writeVarInt(out, (int) record.getDueDate().toEpochDay() - borrowDay);
+                if (record.isReturned()) {
+                    returned.set(i);
+                }
+                i++;
+            }
+            writeBits(out, returned, records.size());
+            out.flush();
+        });
+    }
+
+    public static void read(Library library, Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是二进制快照文件: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的快照版本: " + version);
+            }
+            long journalSeq = in.readLong();
+
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[readVarInt(in)];
+                in.readFully(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int bookCount = in.readInt();
+            int[][] bookFields = new int[bookCount][];
+            for (int i = 0; i < bookCount; i++) {
+                bookFields[i] = new int[]{readVarInt(in), readVarInt(in), readVarInt(in), readVarInt(in)};
+            }
+            BitSet ebooks = readBits(in, bookCount);
+            Book[] books = new Book[bookCount];
+            for (int i = 0; i < bookCount; i++) {
+                int[] f = bookFields[i];
+                books[i] = ebooks.get(i)
+                        ? new EBook(strings[f[0]], strings[f[1]], strings[f[2]])
+                        : new PrintedBook(strings[f[0]], strings[f[1]], strings[f[2]], f[3]);
+                library.addBook(books[i]);
+            }
+
+            int memberCount = in.readInt();
+            for (int i = 0; i < memberCount; i++) {
+                int id = in.readInt();
+                library.addMember(new Member(id, strings[readVarInt(in)]));
+            }
+
+            int recordCount = in.readInt();
+            int[] recordFields = new int[recordCount * 4];
+            for (int i = 0; i < recordCount; i++) {
+                recordFields[i * 4] = readVarInt(in);
+                recordFields[i * 4 + 1] = in.readInt();
+                recordFields[i * 4 + 2] = in.readInt();
+                recordFields[i * 4 + 3] = readVarInt(in);
+            }
+            BitSet returned = readBits(in, recordCount);
+            for (int i = 0; i < recordCount; i++) {
+                int borrowDay = recordFields[i * 4 + 2];
+                library.loadRecord(books[recordFields[i * 4]].getId(), recordFields[i * 4 + 1],
+                        LocalDate.ofEpochDay(borrowDay),
+                        LocalDate.ofEpochDay(borrowDay + recordFields[i * 4 + 3]),
+                        returned.get(i));
+            }
+
+            library.finishLoad(journalSeq);
+        }
+    }
+
+    // 文本格式与二进制快照互相转换：
+    //   java BinarySnapshot to-binary library_data.txt library_data.bin
+    //   java BinarySnapshot to-text library_data.bin library_data.txt
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !("to-binary".equals(args[0]) || "to-text".equals(args[0]))) {
+            System.out.println("用法: java BinarySnapshot to-binary|to-text <输入文件> <输出文件>");
+            return;
+        }
+
+        Library library = new Library();
+        if ("to-binary".equals(args[0])) {
+            library.loadFromFile(args[1]);
+            write(library, Paths.get(args[2]));
+        } else {
+            read(library, Paths.get(args[1]));
+            library.saveToFile(args[2]);
+        }
+        System.out.println("转换完成: " + args[1] + " -> " + args[2]);
+    }
+
+    private static void intern(Map<String, Integer> strings, String s) {
+        strings.putIfAbsent(s, strings.size());
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("varint 格式错误");
+    }
+
+    private static void writeBits(DataOutputStream out, BitSet bits, int count) throws IOException {
+        byte[] bytes = new byte[(count + 7) / 8];
+        byte[] set = bits.toByteArray();
+        System.arraycopy(set, 0, bytes, 0, set.length);
+        out.write(bytes);
+    }
+
+    private static BitSet readBits(DataInputStream in, int count) throws IOException {
+        byte[] bytes = new byte[(count + 7) / 8];
+        in.readFully(bytes);
+        return BitSet.valueOf(bytes);
+    }
+}
@@ -1,4 +1,5 @@
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public abstract class Book {
 
@@ -6,7 +7,12 @@ public abstract class Book {
     protected String title;
     protected String author;
     protected int totalCopies;
-    protected int availableCopies;
+    private int ordinal = -1; // 在所属 Library 中按加入顺序的序号
+    protected volatile int availableCopies;
+
+    // 库存用 CAS 更新，多个借阅台同时借最后一本时只有一个能成功
+    private static final AtomicIntegerFieldUpdater<Book> AVAILABLE =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "availableCopies");
 
     public Book(String id, String title, String author, int totalCopies) {
         this.id = id;
@@ -20,16 +26,26 @@ public abstract class Book {
         return availableCopies > 0;
     }
 
-    public void borrowOne() {
-        if (canBorrow()) {
-            availableCopies--;
-        }
+    // 成功借出一本返回 true，已无库存返回 false
+    public boolean borrowOne() {
+        int current;
+        do {
+            current = availableCopies;
+            if (current <= 0) {
+                return false;
+            }
+        } while (!AVAILABLE.compareAndSet(this, current, current - 1));
+        return true;
     }
 
     public void returnOne() {
-        if (availableCopies < totalCopies) {
-            availableCopies++;
-        }
+        int current;
+        do {
+            current = availableCopies;
+            if (current >= totalCopies) {
+                return;
+            }
+        } while (!AVAILABLE.compareAndSet(this, current, current + 1));
     }
 
     public String getId() {
@@ -52,6 +68,19 @@ public abstract class Book {
         return totalCopies;
     }
 
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    // 远程分片返回的图书副本沿用分片上的库存
+    void setAvailableCopies(int availableCopies) {
+        this.availableCopies = availableCopies;
+    }
+
     public abstract String getInfo();
 
     public boolean matchesTitle(String keyword) {
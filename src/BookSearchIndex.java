@@ -0,0 +1,215 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntFunction;
+
+// 图书倒排索引，随 addBook 增量更新，倒排表为按图书 ordinal 升序的 int 数组：
+// - 标题的 1~3 字 n-gram（小写），用于标题子串搜索（与 Book.matchesTitle 结果一致）
+// - 标题和作者的词元（小写，按字母数字切分），用于前缀搜索
+// 结果按 ordinal（加入顺序）排列
+public class BookSearchIndex {
+    private static final int GRAM = 3;
+
+    private final Map<String, Postings> titleGrams;
+    private final NavigableMap<String, Postings> tokens;
+    private final IntFunction<Book> booksByOrdinal;
+
+    public BookSearchIndex(IntFunction<Book> booksByOrdinal) {
+        this.titleGrams = new ConcurrentHashMap<>();
+        this.tokens = new ConcurrentSkipListMap<>();
+        this.booksByOrdinal = booksByOrdinal;
+    }
+
+    public void add(Book book) {
+        for (String gram : gramsOf(book.getTitle().toLowerCase())) {
+            addTo(titleGrams, gram, book.getOrdinal());
+        }
+        for (String token : tokensOf(book)) {
+            addTo(tokens, token, book.getOrdinal());
+        }
+    }
+
+    public void remove(Book book) {
+        for (String gram : gramsOf(book.getTitle().toLowerCase())) {
+            removeFrom(titleGrams, gram, book.getOrdinal());
+        }
+        for (String token : tokensOf(book)) {
+            removeFrom(tokens, token, book.getOrdinal());
+        }
+    }
+
+    // 标题包含 keyword（不区分大小写）的图书；keyword 不能为空
+    public List<Book> searchTitle(String keyword) {
+        String key = keyword.toLowerCase();
+        if (key.length() <= GRAM) {
+            // 短关键字本身就是一个 n-gram，倒排表即为结果（边输入边搜索时前几个字走这里）
+            Postings exact = titleGrams.get(key);
+            List<Book> results = new ArrayList<>();
+            if (exact != null) {
+                for (int ordinal : exact.toArray()) {
+                    results.add(booksByOrdinal.apply(ordinal));
+                }
+            }
+            return results;
+        }
+
+        // 长关键字：从最短的 3-gram 倒排表开始，依次与其余倒排表求交，再校验子串（3-gram 都出现不代表连续出现）
+        List<int[]> postings = new ArrayList<>();
+        for (int i = 0; i + GRAM <= key.length(); i++) {
+            Postings posting = titleGrams.get(key.substring(i, i + GRAM));
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            postings.add(posting.toArray());
+        }
+        postings.sort(Comparator.comparingInt(ordinals -> ordinals.length));
+
+        int[] candidates = postings.get(0);
+        for (int i = 1; i < postings.size() && candidates.length > 0; i++) {
+            candidates = intersect(candidates, postings.get(i));
+        }
+        return resolve(candidates, keyword);
+    }
+
+    // 标题或作者中有词以 query 的每个词为前缀的图书
+    public List<Book> searchPrefix(String query) {
+        BitSet results = null;
+        for (String word : splitWords(query.toLowerCase())) {
+            BitSet matches = new BitSet();
+            for (Postings posting : tokens.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                posting.addTo(matches);
+            }
+            if (results == null) {
+                results = matches;
+            } else {
+                results.and(matches);
+            }
+            if (results.isEmpty()) break;
+        }
+
+        return results == null ? new ArrayList<>() : resolve(results);
+    }
+
+    private List<Book> resolve(BitSet ordinals) {
+        List<Book> books = new ArrayList<>(ordinals.cardinality());
+        for (int ordinal = ordinals.nextSetBit(0); ordinal >= 0; ordinal = ordinals.nextSetBit(ordinal + 1)) {
+            books.add(booksByOrdinal.apply(ordinal));
+        }
+        return books;
+    }
+
+    private List<Book> resolve(int[] ordinals, String keyword) {
+        List<Book> results = new ArrayList<>();
+        for (int ordinal : ordinals) {
+            Book book = booksByOrdinal.apply(ordinal);
+            if (book.matchesTitle(keyword)) {
+                results.add(book);
+            }
+        }
+        return results;
+    }
+
+    // 两个升序数组的交集
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    // 在 compute 内修改倒排表，避免与并发的删除（空表被移除）交错
+    private static void addTo(Map<String, Postings> index, String key, int ordinal) {
+        index.compute(key, (k, postings) -> {
+            Postings result = postings == null ? new Postings() : postings;
+            result.add(ordinal);
+            return result;
+        });
+    }
+
+    private static void removeFrom(Map<String, Postings> index, String key, int ordinal) {
+        index.computeIfPresent(key, (k, postings) -> postings.remove(ordinal) ? null : postings);
+    }
+
+    private static Set<String> gramsOf(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int len = 1; len <= GRAM; len++) {
+            for (int i = 0; i + len <= text.length(); i++) {
+                grams.add(text.substring(i, i + len));
+            }
+        }
+        return grams;
+    }
+
+    private static Set<String> tokensOf(Book book) {
+        Set<String> result = new HashSet<>(splitWords(book.getTitle().toLowerCase()));
+        result.addAll(splitWords(book.getAuthor().toLowerCase()));
+        return result;
+    }
+
+    private static List<String> splitWords(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // 一个键的倒排表：升序、不重复的图书 ordinal，读写都在自身锁内
+    // 图书按 ordinal 递增加入，通常直接追加；替换图书时沿用原 ordinal，才需要插入到中间
+    private static final class Postings {
+        private int[] ordinals = new int[2];
+        private int size;
+
+        synchronized void add(int ordinal) {
+            int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index >= 0) return;
+
+            index = -index - 1;
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            System.arraycopy(ordinals, index, ordinals, index + 1, size - index);
+            ordinals[index] = ordinal;
+            size++;
+        }
+
+        // 删除后为空时返回 true
+        synchronized boolean remove(int ordinal) {
+            int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index >= 0) {
+                System.arraycopy(ordinals, index + 1, ordinals, index, size - index - 1);
+                size--;
+            }
+            return size == 0;
+        }
+
+        synchronized int[] toArray() {
+            return Arrays.copyOf(ordinals, size);
+        }
+
+        synchronized void addTo(BitSet set) {
+            for (int i = 0; i < size; i++) {
+                set.set(ordinals[i]);
+            }
+        }
+    }
+}
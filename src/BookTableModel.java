@@ -0,0 +1,85 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+
+// 图书表格模型：不复制数据，JTable 绘制到哪一行才读取哪一行
+// 两种数据源：整个馆藏（按加入顺序从 Library 读取）或一份结果列表（搜索、排序）
+public class BookTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"ID", "类型", "标题", "作者", "可用/总数", "状态"};
+
+    private final Library library;
+    private List<Book> books; // 为 null 时显示整个馆藏
+    private int rowCount;
+
+    public BookTableModel(Library library) {
+        this.library = library;
+    }
+
+    public void showCatalog() {
+        books = null;
+        rowCount = library.getBookCount();
+        fireTableDataChanged();
+    }
+
+    public void showBooks(List<Book> books) {
+        this.books = books;
+        rowCount = books.size();
+        fireTableDataChanged();
+    }
+
+    public Book getBookAt(int row) {
+        return books == null ? library.getBookAt(row) : books.get(row);
+    }
+
+    // 借还后只刷新受影响的行
+    public void bookChanged(Book book) {
+        if (book == null || rowCount == 0) return;
+
+        if (books == null) {
+            int row = book.getOrdinal();
+            if (row >= 0 && row < rowCount) {
+                fireTableRowsUpdated(row, row);
+            }
+        } else {
+            // 结果列表中不查找行号，只让表格重绘可见区域
+            fireTableRowsUpdated(0, rowCount - 1);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Book book = getBookAt(row);
+        switch (column) {
+            case 0:
+                return book.getId();
+            case 1:
+                return book instanceof EBook ? "电子书" : "印刷书";
+            case 2:
+                return book.getTitle();
+            case 3:
+                return book.getAuthor();
+            case 4:
+                return book.getAvailableCopies() + "/" + book.getTotalCopies();
+            case 5:
+                return book.canBorrow() ? "可借阅" : "不可借阅";
+            default:
+                return null;
+        }
+    }
+}
@@ -1,26 +1,42 @@
 import java.time.LocalDate;
+import java.time.ZoneId;
 
+// 一条借阅记录。借阅历史以列的形式保存在 RecordStore 中，这里的对象是读取时按行创建的快照
 public class BorrowRecord {
-    private Book book;
-    private Member member;
-    private LocalDate borrowDate;
-    private LocalDate dueDate;
-    private boolean returned;
+    // 当天的借阅日和应还日，跨过午夜（系统时区）后重新计算；同一天的记录共用这两个日期对象
+    private static volatile Today today = Today.compute();
 
+    private final Book book;
+    private final int memberId; // 只保存成员ID，成员对象由 Library 按ID查找
+    private final LocalDate borrowDate;
+    private final LocalDate dueDate;
+    private final boolean returned;
+
+    // 今天借出的新记录
     public BorrowRecord(Book book, Member member) {
         this.book = book;
-        this.member = member;
-        this.borrowDate = LocalDate.now();
-        this.dueDate = borrowDate.plusWeeks(2); // 默认2周归还期
+        this.memberId = member.getId();
+        Today t = today();
+        this.borrowDate = t.date;
+        this.dueDate = t.dueDate; // 默认2周归还期
         this.returned = false;
     }
 
+    // 已有的记录（加载、重放或从存储中读取），日期直接使用传入的值，不读取时钟
+    public BorrowRecord(Book book, int memberId, LocalDate borrowDate, LocalDate dueDate, boolean returned) {
+        this.book = book;
+        this.memberId = memberId;
+        this.borrowDate = borrowDate;
+        this.dueDate = dueDate;
+        this.returned = returned;
+    }
+
     public Book getBook() {
         return book;
     }
 
-    public Member getMember() {
-        return member;
+    public int getMemberId() {
+        return memberId;
     }
 
     public LocalDate getBorrowDate() {
@@ -35,13 +51,45 @@ public class BorrowRecord {
         return returned;
     }
 
-    public void setReturned(boolean returned) {
-        this.returned = returned;
-    }
-
     @Override
     public String toString() {
         return String.format("%s %s (Borrowed on:%s, Due:%s)",
                 book.getId(), book.getTitle(), borrowDate, dueDate);
     }
+
+    // 今天的借阅日和应还日（两者取自同一天），借书时直接使用，不创建记录对象
+    static Today today() {
+        Today t = today;
+        if (System.currentTimeMillis() >= t.endMillis) {
+            t = Today.compute();
+            today = t;
+        }
+        return t;
+    }
+
+    static final class Today {
+        private final LocalDate date;
+        private final LocalDate dueDate;
+        private final long endMillis; // 下一天开始的时刻
+
+        private Today(LocalDate date, long endMillis) {
+            this.date = date;
+            this.dueDate = date.plusWeeks(2);
+            this.endMillis = endMillis;
+        }
+
+        LocalDate getDate() {
+            return date;
+        }
+
+        LocalDate getDueDate() {
+            return dueDate;
+        }
+
+        static Today compute() {
+            ZoneId zone = ZoneId.systemDefault();
+            LocalDate date = LocalDate.now(zone);
+            return new Today(date, date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 列式的内存借阅历史：每列一个数组（归还版本为 long，其余为 int），每条记录 24 字节（对象形式的记录约 100 字节）
+// 按 65536 行分块存放，增长时不复制已有数据
+// 追加不加锁：先从 reserved 取得行号，写入各列，最后写归还版本（volatile 写，未写入的行为 -1）发布该行；
+// size 推进到连续发布完的位置，读者只读 size 之前的行，无需加锁；append 返回时该行已在 size 之前
+public class ColumnarRecordStorage implements RecordStorage {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int UNPUBLISHED = -1;
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+
+    @Override
+    public int append(int bookOrdinal, int memberId, int borrowDay, int dueDay, long returnedVersion) {
+        int row = reserved.getAndIncrement();
+        Chunk chunk = chunk(row >>> CHUNK_BITS);
+        int i = row & CHUNK_MASK;
+        chunk.books[i] = bookOrdinal;
+        chunk.members[i] = memberId;
+        chunk.borrowDays[i] = borrowDay;
+        chunk.dueDays[i] = dueDay;
+        chunk.returnedVersions.set(i, returnedVersion);
+
+        // 推进 size 越过已发布的行（也替前面刚写完的行推进）；前面的行还在写时稍等，返回时本行已对读者可见
+        while (size.get() <= row) {
+            int n = size.get();
+            if (isPublished(n)) {
+                size.compareAndSet(n, n + 1);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int bookOrdinal(int row) {
+        return chunks[row >>> CHUNK_BITS].books[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int memberId(int row) {
+        return chunks[row >>> CHUNK_BITS].members[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int borrowDay(int row) {
+        return chunks[row >>> CHUNK_BITS].borrowDays[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int dueDay(int row) {
+        return chunks[row >>> CHUNK_BITS].dueDays[row & CHUNK_MASK];
+    }
+
+    @Override
+    public long returnedVersion(int row) {
+        return chunks[row >>> CHUNK_BITS].returnedVersions.get(row & CHUNK_MASK);
+    }
+
+    @Override
+    public void setReturnedVersion(int row, long version) {
+        chunks[row >>> CHUNK_BITS].returnedVersions.set(row & CHUNK_MASK, version);
+    }
+
+    // 逐块对图书列做紧凑循环，不创建记录对象
+    @Override
+    public void countByBook(int rows, long[] counts) {
+        Chunk[] current = chunks;
+        for (int start = 0; start < rows; start += CHUNK_SIZE) {
+            int[] books = current[start >>> CHUNK_BITS].books;
+            int length = Math.min(CHUNK_SIZE, rows - start);
+            for (int i = 0; i < length; i++) {
+                counts[books[i]]++;
+            }
+        }
+    }
+
+    private boolean isPublished(int row) {
+        Chunk[] current = chunks;
+        int index = row >>> CHUNK_BITS;
+        return index < current.length && current[index].returnedVersions.get(row & CHUNK_MASK) != UNPUBLISHED;
+    }
+
+    // 每 65536 行才需要新块，创建时加锁；已有的块不复制
+    private Chunk chunk(int index) {
+        Chunk[] current = chunks;
+        if (index < current.length) {
+            return current[index];
+        }
+        synchronized (this) {
+            current = chunks;
+            if (index >= current.length) {
+                Chunk[] grown = Arrays.copyOf(current, index + 1);
+                for (int i = current.length; i <= index; i++) {
+                    grown[i] = new Chunk();
+                }
+                chunks = grown;
+                current = grown;
+            }
+            return current[index];
+        }
+    }
+
+    private static final class Chunk {
+        private final int[] books = new int[CHUNK_SIZE];
+        private final int[] members = new int[CHUNK_SIZE];
+        private final int[] borrowDays = new int[CHUNK_SIZE];
+        private final int[] dueDays = new int[CHUNK_SIZE];
+        // 追加时最后写入以发布整行，归还时由其他线程设置，读写用 volatile 语义保证可见
+        private final AtomicLongArray returnedVersions = new AtomicLongArray(CHUNK_SIZE);
+
+        Chunk() {
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                returnedVersions.lazySet(i, UNPUBLISHED);
+            }
+        }
+    }
+}
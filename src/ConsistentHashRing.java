@@ -0,0 +1,51 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// 一致性哈希环：每个分片在环上放 VIRTUAL_NODES 个虚拟节点，键归属于顺时针方向第一个虚拟节点所在的分片
+// 增加或减少分片时只有相邻区间的键改变归属；哈希只依赖字符串的 UTF-8 字节，各进程计算结果一致
+// 构造后只读，可被多个线程同时使用
+public class ConsistentHashRing {
+    private static final int VIRTUAL_NODES = 160;
+
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+    private final int shardCount;
+
+    public ConsistentHashRing(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("分片数必须大于 0: " + shardCount);
+        }
+        this.shardCount = shardCount;
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                ring.put(hash("shard-" + shard + "#" + node), shard);
+            }
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // 键所属分片的下标
+    public int shardFor(String key) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    // FNV-1a 64 位，再用 MurmurHash3 的 fmix64 打散，使相近的ID（B1、B2…）在环上均匀分布
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
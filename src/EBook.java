@@ -9,8 +9,8 @@ public class EBook extends Book {
     }
 
     @Override
-    public void borrowOne() {
-        // 电子书不减少库存
+    public boolean borrowOne() {
+        return true; // 电子书不减少库存
     }
 
     @Override
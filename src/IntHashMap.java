@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+// int 键的开放寻址哈希表（线性探测），查找时不装箱，每个条目只占键数组和值数组中的各一格
+// 读取无锁；写入加锁串行执行。先写键再发布值，读者看到值时一定能看到对应的键；
+// 扩容时构建完整的新表后整体替换。不支持删除（成员和按成员的索引只增不减），值不能为 null
+public class IntHashMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    public interface IntObjConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private volatile Table table;
+    private volatile int size;
+
+    public IntHashMap() {
+        this.table = new Table(MIN_CAPACITY);
+    }
+
+    public V get(int key) {
+        Table t = table;
+        for (int i = indexOf(key, t.mask); ; i = (i + 1) & t.mask) {
+            Object value = t.values.get(i);
+            if (value == null) {
+                return null;
+            }
+            if (t.keys[i] == key) {
+                return cast(value);
+            }
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    // 返回原来的值，没有时返回 null
+    public synchronized V put(int key, V value) {
+        Table t = table;
+        int i = slotOf(t, key);
+        Object previous = t.values.get(i);
+        t.keys[i] = key;
+        t.values.set(i, value);
+        if (previous == null) {
+            grow();
+        }
+        return cast(previous);
+    }
+
+    public V computeIfAbsent(int key, IntFunction<V> factory) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        synchronized (this) {
+            Table t = table;
+            int i = slotOf(t, key);
+            Object existing = t.values.get(i);
+            if (existing != null) {
+                return cast(existing);
+            }
+            value = factory.apply(key);
+            t.keys[i] = key;
+            t.values.set(i, value);
+            grow();
+            return value;
+        }
+    }
+
+    public synchronized void clear() {
+        table = new Table(MIN_CAPACITY);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 当前所有值的副本，顺序不确定
+    public List<V> values() {
+        Table t = table;
+        List<V> result = new ArrayList<>(size);
+        for (int i = 0; i <= t.mask; i++) {
+            Object value = t.values.get(i);
+            if (value != null) {
+                result.add(cast(value));
+            }
+        }
+        return result;
+    }
+
+    public void forEach(IntObjConsumer<V> action) {
+        Table t = table;
+        for (int i = 0; i <= t.mask; i++) {
+            Object value = t.values.get(i);
+            if (value != null) {
+                action.accept(t.keys[i], cast(value));
+            }
+        }
+    }
+
+    // 键所在的格子，不存在时为探测到的第一个空格子；调用方持有锁
+    private static int slotOf(Table t, int key) {
+        for (int i = indexOf(key, t.mask); ; i = (i + 1) & t.mask) {
+            if (t.values.get(i) == null || t.keys[i] == key) {
+                return i;
+            }
+        }
+    }
+
+    // 新增一个条目后调用：装载因子超过 3/4 时容量翻倍
+    private void grow() {
+        int newSize = size + 1;
+        Table t = table;
+        if (newSize > (t.mask + 1) / 4 * 3) {
+            Table bigger = new Table((t.mask + 1) * 2);
+            for (int i = 0; i <= t.mask; i++) {
+                Object value = t.values.get(i);
+                if (value != null) {
+                    int j = slotOf(bigger, t.keys[i]);
+                    bigger.keys[j] = t.keys[i];
+                    bigger.values.lazySet(j, value);
+                }
+            }
+            table = bigger;
+        }
+        size = newSize;
+    }
+
+    private static int indexOf(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private static final class Table {
+        private final int[] keys;
+        private final AtomicReferenceArray<Object> values;
+        private final int mask;
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 只追加的非负 int 列表（行号、月份、文件偏移），多个线程可同时追加，读取无锁
+// 元素放在依次加倍的段中（4、8、16…），增长时不复制已有元素，各追加者写入自己取得的位置：
+// 先从 reserved 取下标，写入元素（空位为 -1），再把 size 推进到连续写完的位置；读者只读 size 之前的元素
+public class IntList {
+    private static final int FIRST_BITS = 2; // 第一段 4 个元素
+    private static final int EMPTY = -1;
+    private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private volatile int[][] segments = new int[0][];
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("IntList 只保存非负数: " + value);
+        }
+        int index = reserved.getAndIncrement();
+        int position = index + (1 << FIRST_BITS);
+        int[] segment = segment(segmentOf(position));
+        ELEMENTS.setVolatile(segment, position - Integer.highestOneBit(position), value);
+
+        // 推进 size 越过已写入的元素（也替前面刚写完的推进）；前面的还在写时稍等，返回时本元素已对读者可见
+        while (size.get() <= index) {
+            int n = size.get();
+            if (isWritten(n)) {
+                size.compareAndSet(n, n + 1);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    // 当前内容的副本
+    public int[] toArray() {
+        int n = size.get();
+        int[][] current = segments;
+        int[] result = new int[n];
+        int copied = 0;
+        for (int k = 0; copied < n; k++) {
+            int length = Math.min(current[k].length, n - copied);
+            System.arraycopy(current[k], 0, result, copied, length);
+            copied += length;
+        }
+        return result;
+    }
+
+    private boolean isWritten(int index) {
+        int position = index + (1 << FIRST_BITS);
+        int k = segmentOf(position);
+        int[][] current = segments;
+        return k < current.length
+                && (int) ELEMENTS.getVolatile(current[k], position - Integer.highestOneBit(position)) != EMPTY;
+    }
+
+    // 下标 + 4 的最高位决定所在的段
+    private static int segmentOf(int position) {
+        return 31 - Integer.numberOfLeadingZeros(position) - FIRST_BITS;
+    }
+
+    // 段只在列表增长到新的 2 的幂时创建，创建时加锁，已有的段不复制
+    private int[] segment(int k) {
+        int[][] current = segments;
+        if (k < current.length) {
+            return current[k];
+        }
+        synchronized (this) {
+            current = segments;
+            if (k >= current.length) {
+                int[][] grown = Arrays.copyOf(current, k + 1);
+                for (int i = current.length; i <= k; i++) {
+                    grown[i] = new int[1 << (i + FIRST_BITS)];
+                    Arrays.fill(grown[i], EMPTY);
+                }
+                segments = grown;
+                current = grown;
+            }
+            return current[k];
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+// 把运行指标注册为平台 MBean（LibraryManagementSystem:type=LibraryMetrics），每次读取属性时取最新快照
+public class JmxMetricsExporter implements MetricsExporter, LibraryMetricsMXBean {
+    private static final String OBJECT_NAME = "LibraryManagementSystem:type=LibraryMetrics";
+
+    private LibraryMetrics metrics;
+    private ObjectName name;
+
+    @Override
+    public void start(LibraryMetrics metrics) throws Exception {
+        this.metrics = metrics;
+        this.name = new ObjectName(OBJECT_NAME);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    @Override
+    public void stop() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (Exception e) {
+            System.err.println("注销指标 MBean 失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return metrics.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        metrics.setEnabled(enabled);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return metrics.snapshot().getCounters();
+    }
+
+    @Override
+    public List<MetricsSnapshot.LatencyStats> getLatencies() {
+        return metrics.snapshot().getLatencies();
+    }
+
+    @Override
+    public String getTextDump() {
+        return metrics.snapshot().toText();
+    }
+
+    @Override
+    public void reset() {
+        metrics.reset();
+    }
+}
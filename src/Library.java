@@ -1,26 +1,183 @@
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
-
-public class Library {
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class Library implements LibraryShard {
     private Map<String, Book> booksById;
-    private Map<Integer, Member> membersById;
-    private List<BorrowRecord> records;
-    private static final String DATA_FILE = "I:\\Java实验\\LibraryManagementSystem\\src\\library_data.txt";
+    private IntHashMap<Member> membersById;
+    // 按加入顺序排列的图书和成员，下标即 ordinal，供表格按行号读取
+    private final List<Book> bookOrder = new ArrayList<>();
+    private final List<Member> memberOrder = new ArrayList<>();
+    private RecordStore records;
+    private LibraryStatistics statistics;
+    private BookSearchIndex searchIndex;
+    private SortedBookIndex booksByTitle;
+    private SortedBookIndex booksByAuthor;
+    private volatile LibraryJournal journal;
+    // 修改操作在 enter/exit 之间彼此并发执行；生成一致快照（snapshot）时短暂暂停修改
+    private final MutationGate mutations = new MutationGate();
+    private volatile long snapshotSeq; // 快照已包含的最后一条日志序号
+    // 保存数据文件串行执行，后开始的保存写入的快照一定更新
+    private final Object saveLock = new Object();
+    // 后台保存（日志压缩、自动保存、checkpointAsync）用的单线程执行器，首次使用时创建
+    private ScheduledExecutorService checkpointer;
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+    // 数据目录（默认见 ShardedDataStore.resolveDir），只在持有 saveLock 或加载期间访问
+    private final ShardedDataStore dataStore;
+    // 上次保存之后图书、成员是否有增加或替换（借阅记录按月份由 RecordStore 记录）
+    private final AtomicBoolean booksDirty = new AtomicBoolean();
+    private final AtomicBoolean membersDirty = new AtomicBoolean();
+    // 数据目录中还有未读入内存的借阅历史（懒加载或跳过的冷分片），由 loadHistory 按需读取
+    private volatile boolean historyPending;
+    // 旧版本固定使用的单文件数据，数据目录为空时从这里迁移
+    private static final String LEGACY_DATA_FILE = "I:\\Java实验\\LibraryManagementSystem\\src\\library_data.txt";
+    private static final String JOURNAL_SEQ_HEADER = "# journal-seq=";
+    private final LibraryMetrics metrics = new LibraryMetrics(Boolean.getBoolean("library.metrics"));
 
     public Library() {
-        this.booksById = new HashMap<>();
-        this.membersById = new HashMap<>();
-        this.records = new ArrayList<>();
+        this(ShardedDataStore.resolveDir());
+    }
+
+    // 使用指定的数据目录（而不是 ShardedDataStore.resolveDir），例如进程内的各个分片
+    public Library(Path dataDir) {
+        this(dataDir, createRecordStorage());
+    }
+
+    // 借阅历史存放在指定的存储中，例如 MappedRecordStorage
+    public Library(RecordStorage recordStorage) {
+        this(ShardedDataStore.resolveDir(), recordStorage);
+    }
+
+    private Library(Path dataDir, RecordStorage recordStorage) {
+        this.dataStore = new ShardedDataStore(dataDir);
+        this.booksById = new ConcurrentHashMap<>();
+        this.membersById = new IntHashMap<>();
+        this.records = new RecordStore(recordStorage, this::getBookAt);
+        this.statistics = new LibraryStatistics();
+        this.searchIndex = new BookSearchIndex(this::getBookAt);
+        this.booksByTitle = new SortedBookIndex(Book::getTitle);
+        this.booksByAuthor = new SortedBookIndex(Book::getAuthor);
+    }
+
+    // 设置了 -Dlibrary.records.dir=<目录> 时借阅历史放在该目录下的堆外映射文件中（每个 Library 一个，关闭时删除），
+    // 否则放在堆内
+    private static RecordStorage createRecordStorage() {
+        String dir = System.getProperty("library.records.dir");
+        if (dir != null && !dir.isEmpty()) {
+            try {
+                Path file = Files.createTempFile(Paths.get(dir), "records-", ".bin");
+                file.toFile().deleteOnExit();
+                return MappedRecordStorage.create(file);
+            } catch (IOException e) {
+                System.err.println("打开借阅记录文件失败，改用内存存储: " + e.getMessage());
+            }
+        }
+        return new ColumnarRecordStorage();
     }
 
     public void addBook(Book book) {
-        booksById.put(book.getId(), book);
+        mutations.enter();
+        try {
+            putBook(book);
+            appendJournal(formatBook(book));
+        } finally {
+            mutations.exit();
+        }
+        compactIfNeeded();
+    }
+
+    private void putBook(Book book) {
+        synchronized (bookOrder) {
+            Book previous = booksById.put(book.getId(), book);
+            if (previous != null) {
+                // 同ID的新图书沿用旧图书的位置
+                book.setOrdinal(previous.getOrdinal());
+                bookOrder.set(previous.getOrdinal(), book);
+                searchIndex.remove(previous);
+                booksByTitle.remove(previous);
+                booksByAuthor.remove(previous);
+            } else {
+                book.setOrdinal(bookOrder.size());
+                bookOrder.add(book);
+            }
+            searchIndex.add(book);
+            booksByTitle.add(book);
+            booksByAuthor.add(book);
+        }
+        booksDirty.set(true);
     }
 
     public void addMember(Member member) {
-        membersById.put(member.getId(), member);
+        mutations.enter();
+        try {
+            putMember(member);
+            appendJournal(formatMember(member));
+        } finally {
+            mutations.exit();
+        }
+        compactIfNeeded();
+    }
+
+    private void putMember(Member member) {
+        synchronized (memberOrder) {
+            Member previous = membersById.put(member.getId(), member);
+            if (previous != null) {
+                member.setOrdinal(previous.getOrdinal());
+                memberOrder.set(previous.getOrdinal(), member);
+            } else {
+                member.setOrdinal(memberOrder.size());
+                memberOrder.add(member);
+            }
+        }
+        membersDirty.set(true);
+    }
+
+    public Book getBook(String id) {
+        return booksById.get(id);
+    }
+
+    public Member getMember(int id) {
+        return membersById.get(id);
+    }
+
+    // 按加入顺序随机访问，供界面表格按需读取行
+    public int getBookCount() {
+        synchronized (bookOrder) {
+            return bookOrder.size();
+        }
+    }
+
+    public Book getBookAt(int ordinal) {
+        synchronized (bookOrder) {
+            return bookOrder.get(ordinal);
+        }
+    }
+
+    public int getMemberCount() {
+        synchronized (memberOrder) {
+            return memberOrder.size();
+        }
+    }
+
+    public Member getMemberAt(int ordinal) {
+        synchronized (memberOrder) {
+            return memberOrder.get(ordinal);
+        }
     }
 
     public List<Book> listBooks() {
@@ -28,70 +185,168 @@ public class Library {
     }
 
     public List<Member> listMembers() {
-        return new ArrayList<>(membersById.values());
+        return membersById.values();
     }
 
-    public String borrowBook(int memberId, String bookId) {
-        Member member = membersById.get(memberId);
-        if (member == null) {
-            return String.format("Error: Member with ID %d does not exist.", memberId);
+    // 借还返回结构化结果，不格式化消息；显示给用户的文字由界面层（LoanMessages）生成
+    public LoanResult borrowBook(int memberId, String bookId) {
+        LoanResult result;
+        mutations.enter();
+        try {
+            result = borrowEntry(memberId, bookId);
+        } finally {
+            mutations.exit();
         }
+        compactIfNeeded();
+        return result;
+    }
 
-        Book book = booksById.get(bookId);
-        if (book == null) {
-            return String.format("Error: Book with ID %s not found.", bookId);
+    public LoanResult returnBook(int memberId, String bookId) {
+        LoanResult result;
+        mutations.enter();
+        try {
+            result = returnEntry(memberId, bookId);
+        } finally {
+            mutations.exit();
+        }
+        compactIfNeeded();
+        return result;
+    }
+
+    // 批量借书：整批只加一次锁、最后检查一次日志压缩；每一项单独成功或失败，结果与请求一一对应
+    public List<LoanResult> borrowBooks(List<LoanRequest> requests) {
+        return runLoan(() -> {
+            List<LoanResult> results = new ArrayList<>(requests.size());
+            for (LoanRequest request : requests) {
+                results.add(borrowEntry(request.getMemberId(), request.getBookId()));
+            }
+            return results;
+        });
+    }
+
+    // 批量还书（如还书箱扫描），规则同 borrowBooks
+    public List<LoanResult> returnBooks(List<LoanRequest> requests) {
+        return runLoan(() -> {
+            List<LoanResult> results = new ArrayList<>(requests.size());
+            for (LoanRequest request : requests) {
+                results.add(returnEntry(request.getMemberId(), request.getBookId()));
+            }
+            return results;
+        });
+    }
+
+    // 批量借还：整批在一次 enter/exit 之间执行，退出后再检查是否需要压缩日志
+    private <T> T runLoan(Supplier<T> action) {
+        T result;
+        mutations.enter();
+        try {
+            result = action.get();
+        } finally {
+            mutations.exit();
+        }
+        compactIfNeeded();
+        return result;
+    }
+
+    private LoanResult borrowEntry(int memberId, String bookId) {
+        long start = metrics.start();
+        Member member = membersById.get(memberId);
+        Book book = member == null ? null : booksById.get(bookId);
+
+        LoanResult result;
+        if (member == null) {
+            result = new LoanResult(LoanStatus.MEMBER_NOT_FOUND, memberId, bookId, null, null);
+        } else if (book == null) {
+            result = new LoanResult(LoanStatus.BOOK_NOT_FOUND, memberId, bookId, member, null);
+        } else if (journal == null) {
+            result = doBorrow(member, book, null, null);
+        } else {
+            // 日志模式下同一本书的借还串行执行，保证日志顺序与库存变化顺序一致
+            synchronized (book) {
+                result = doBorrow(member, book, null, null);
+            }
         }
+        metrics.recordBorrow(result.getStatus(), start);
+        return result;
+    }
 
+    // borrowDate 为 null 时今天借出；重放日志时传入日志中记录的日期
+    private LoanResult doBorrow(Member member, Book book, LocalDate borrowDate, LocalDate dueDate) {
         if (!book.canBorrow()) {
-            return String.format("Failed: No available copies of \"%s\". (Available:%d/%d)",
-                    book.getTitle(), book.getAvailableCopies(), book.getTotalCopies());
+            return loanResult(LoanStatus.NO_COPIES, member, book);
         }
 
-        // 检查是否已借过且未归还
-        boolean alreadyBorrowed = records.stream()
-                .anyMatch(r -> r.getMember().getId() == memberId
-                        && r.getBook().getId().equals(bookId)
-                        && !r.isReturned());
+        // 检查是否已借过且未归还：原子地占用该成员-图书组合
+        if (!records.beginLoan(member.getId(), book)) {
+            return loanResult(LoanStatus.ALREADY_BORROWED, member, book);
+        }
 
-        if (alreadyBorrowed) {
-            return String.format("Failed: Member \"%s\" already borrowed \"%s\" and hasn't returned it.",
-                    member.getName(), book.getTitle());
+        if (!book.borrowOne()) {
+            // 最后一本已被其他借阅台借走
+            records.cancelLoan(member.getId(), book);
+            return loanResult(LoanStatus.NO_COPIES, member, book);
         }
 
-        book.borrowOne();
-        BorrowRecord record = new BorrowRecord(book, member);
-        records.add(record);
-        return String.format("Success! Member \"%s\" borrowed \"%s\". Remaining copies: %d/%d",
-                member.getName(), book.getTitle(), book.getAvailableCopies(), book.getTotalCopies());
+        if (borrowDate == null) {
+            BorrowRecord.Today today = BorrowRecord.today();
+            borrowDate = today.getDate();
+            dueDate = today.getDueDate();
+        }
+        records.commitLoan(book, member.getId(), borrowDate, dueDate);
+        statistics.onBorrow(book.getOrdinal(), member.getId());
+        LibraryJournal current = journal;
+        if (current != null) {
+            try {
+                current.appendBorrow(book.getId(), member.getId(), borrowDate, dueDate);
+            } catch (IOException e) {
+                System.err.println("写入日志失败: " + e.getMessage());
+            }
+        }
+        return loanResult(LoanStatus.SUCCESS, member, book);
     }
 
-    public String returnBook(int memberId, String bookId) {
+    private LoanResult returnEntry(int memberId, String bookId) {
+        long start = metrics.start();
         Member member = membersById.get(memberId);
+        Book book = member == null ? null : booksById.get(bookId);
+
+        LoanResult result;
         if (member == null) {
-            return String.format("Error: Member with ID %d does not exist.", memberId);
+            result = new LoanResult(LoanStatus.MEMBER_NOT_FOUND, memberId, bookId, null, null);
+        } else if (book == null) {
+            result = new LoanResult(LoanStatus.BOOK_NOT_FOUND, memberId, bookId, member, null);
+        } else if (journal == null) {
+            result = doReturn(member, book);
+        } else {
+            synchronized (book) {
+                result = doReturn(member, book);
+            }
         }
+        metrics.recordReturn(result.getStatus(), start);
+        return result;
+    }
 
-        Book book = booksById.get(bookId);
-        if (book == null) {
-            return String.format("Error: Book with ID %s not found.", bookId);
+    private LoanResult doReturn(Member member, Book book) {
+        // endLoan 失败说明没有未归还的记录，或该记录刚被其他线程归还
+        if (!records.endLoan(member.getId(), book)) {
+            return loanResult(LoanStatus.NOT_BORROWED, member, book);
         }
 
-        BorrowRecord record = records.stream()
-                .filter(r -> r.getMember().getId() == memberId
-                        && r.getBook().getId().equals(bookId)
-                        && !r.isReturned())
-                .findFirst()
-                .orElse(null);
-
-        if (record == null) {
-            return String.format("Failed: Member \"%s\" has no active borrow record for book %s.",
-                    member.getName(), bookId);
+        statistics.onReturn(member.getId());
+        book.returnOne();
+        LibraryJournal current = journal;
+        if (current != null) {
+            try {
+                current.appendReturn(book.getId(), member.getId());
+            } catch (IOException e) {
+                System.err.println("写入日志失败: " + e.getMessage());
+            }
         }
+        return loanResult(LoanStatus.SUCCESS, member, book);
+    }
 
-        record.setReturned(true);
-        book.returnOne();
-        return String.format("Success! Member \"%s\" returned \"%s\". Available copies: %d/%d",
-                member.getName(), book.getTitle(), book.getAvailableCopies(), book.getTotalCopies());
+    private static LoanResult loanResult(LoanStatus status, Member member, Book book) {
+        return new LoanResult(status, member.getId(), book.getId(), member, book);
     }
 
     public boolean hasBook(String id) {
@@ -104,84 +359,315 @@ public class Library {
 
     // Week 2: 搜索功能
     public List<Book> searchBooksByTitle(String keyword) {
-        return booksById.values().stream()
-                .filter(book -> book.matchesTitle(keyword))
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        // 空关键字匹配所有图书
+        List<Book> results = keyword.isEmpty() ? listBooks() : searchIndex.searchTitle(keyword);
+        metrics.record(LibraryMetrics.Operation.SEARCH, start);
+        return results;
+    }
+
+    // 按词前缀搜索标题和作者，多个词时要求全部匹配
+    public List<Book> searchBooksByPrefix(String query) {
+        long start = metrics.start();
+        List<Book> results = searchIndex.searchPrefix(query);
+        metrics.record(LibraryMetrics.Operation.SEARCH, start);
+        return results;
     }
 
-    // Week 3: 排序功能
+    // Week 3: 排序功能（排序索引随 addBook 维护，标题/作者相同时按ID排序）
     public List<Book> listBooksSortedByTitle() {
-        List<Book> books = new ArrayList<>(booksById.values());
-        Collections.sort(books, Comparator.comparing(Book::getTitle));
+        long start = metrics.start();
+        List<Book> books = booksByTitle.list();
+        metrics.record(LibraryMetrics.Operation.SORT, start);
         return books;
     }
 
     public List<Book> listBooksSortedByAuthor() {
-        List<Book> books = new ArrayList<>(booksById.values());
-        Collections.sort(books, Comparator.comparing(Book::getAuthor));
+        long start = metrics.start();
+        List<Book> books = booksByAuthor.list();
+        metrics.record(LibraryMetrics.Operation.SORT, start);
         return books;
     }
 
+    // 分页读取：返回排在 after 之后的最多 pageSize 本，after 为 null 时取第一页
+    public List<Book> listBooksSortedByTitle(Book after, int pageSize) {
+        long start = metrics.start();
+        List<Book> page = booksByTitle.page(after, pageSize);
+        metrics.record(LibraryMetrics.Operation.SORT, start);
+        return page;
+    }
+
+    public List<Book> listBooksSortedByAuthor(Book after, int pageSize) {
+        long start = metrics.start();
+        List<Book> page = booksByAuthor.page(after, pageSize);
+        metrics.record(LibraryMetrics.Operation.SORT, start);
+        return page;
+    }
+
     // Week 3: 统计功能
     public List<BorrowRecord> getMemberBorrowedBooks(int memberId) {
-        return records.stream()
-                .filter(r -> r.getMember().getId() == memberId && !r.isReturned())
-                .collect(Collectors.toList());
+        return records.getActiveRecords(memberId);
+    }
+
+    // 截至 asOf（不含当天到期的）逾期未还的借阅，按应还日排列；开销与逾期数量成正比
+    public List<BorrowRecord> findOverdue(LocalDate asOf) {
+        return records.findOverdue(asOf);
+    }
+
+    // 同 findOverdue，按批交给 action（每批最多 batchSize 条），返回逾期总数；逾期很多时不生成完整列表
+    public int forEachOverdue(LocalDate asOf, int batchSize, Consumer<List<BorrowRecord>> action) {
+        return records.forEachOverdue(asOf, batchSize, action);
+    }
+
+    // 只需要数量时使用，读取统计计数器，O(1) 且不创建列表
+    public int getMemberActiveLoanCount(int memberId) {
+        return statistics.getActiveCount(memberId);
+    }
+
+    // 所有成员的当前借阅数，没有出现的成员为 0
+    public Map<Integer, Integer> getActiveLoanCounts() {
+        return statistics.getActiveCounts();
     }
 
     public long getBookBorrowCount(String bookId) {
-        return records.stream()
-                .filter(r -> r.getBook().getId().equals(bookId))
-                .count();
+        Book book = booksById.get(bookId);
+        return book == null ? 0 : statistics.getBookBorrowCount(book.getOrdinal());
+    }
+
+    public LibraryMetrics getMetrics() {
+        return metrics;
     }
 
     public Member findMostActiveBorrower() {
-        Map<Integer, Long> borrowCountMap = records.stream()
-                .filter(r -> !r.isReturned())
-                .collect(Collectors.groupingBy(r -> r.getMember().getId(), Collectors.counting()));
+        Integer memberId = statistics.getMostActiveMemberId();
+        return memberId == null ? null : membersById.get(memberId);
+    }
 
-        return borrowCountMap.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(entry -> membersById.get(entry.getKey()))
-                .orElse(null);
+    // 一致的时间点视图，供统计报表和保存使用。只在复制图书/成员列表和借阅计数期间暂停修改，
+    // 借阅历史只记下行数和归还版本号，开销与历史长度无关
+    public LibrarySnapshot snapshot() {
+        mutations.pause();
+        try {
+            List<Book> books;
+            synchronized (bookOrder) {
+                books = new ArrayList<>(bookOrder);
+            }
+            List<Member> members;
+            synchronized (memberOrder) {
+                members = new ArrayList<>(memberOrder);
+            }
+            long[] borrowCounts = new long[books.size()];
+            for (int ordinal = 0; ordinal < borrowCounts.length; ordinal++) {
+                borrowCounts[ordinal] = statistics.getBookBorrowCount(ordinal);
+            }
+            return new LibrarySnapshot(books, members, borrowCounts, findMostActiveBorrower(),
+                    records, records.size(), records.currentVersion(), currentJournalSeq());
+        } finally {
+            mutations.resume();
+        }
     }
 
     public void loadFromFile() {
-        File file = new File(DATA_FILE);
+        loadFromFile(TaskProgress.NONE);
+    }
+
+    public void loadFromFile(String path) {
+        loadFromFile(path, TaskProgress.NONE);
+    }
+
+    // 从数据目录加载。设置了 -Dlibrary.load.months=N 时，早于最近 N 个月且已全部归还的借阅记录分片不加载；
+    // 设置了 -Dlibrary.lazy.history=true 时只加载未归还的借阅记录，已归还的留在文件中。
+    // 借还只依赖未归还的记录，借阅次数取自上次保存的次数文件；列出全部借阅记录（导出）时才由 loadHistory
+    // 读入其余历史，未读入的部分保存时原样保留。
+    // 数据目录中还没有数据时，从旧版单文件（数据目录下的 library_data.txt 或原来的固定路径）
+    // 连同其日志一起迁移，并立即按目录格式保存一次
+    public void loadFromFile(TaskProgress progress) {
+        if (dataStore.exists()) {
+            long start = metrics.start();
+            try {
+                LibraryFileLoader loaded;
+                try {
+                    loaded = dataStore.load(Integer.getInteger("library.load.months", 0),
+                            Boolean.getBoolean("library.lazy.history"), progress);
+                } catch (CancellationException e) {
+                    System.out.println("数据加载已取消");
+                    return;
+                }
+                applyLoaded(loaded, start);
+                // 刚加载的内容与文件一致，下次保存不必重写
+                booksDirty.set(false);
+                membersDirty.set(false);
+                historyPending = dataStore.hasUnloadedHistory();
+                if (historyPending) {
+                    restoreBorrowCounts();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("加载数据失败: " + e.getMessage());
+            }
+            return;
+        }
+
+        for (String legacy : new String[]{dataStore.legacyDataFile().toString(), LEGACY_DATA_FILE}) {
+            if (new File(legacy).exists()) {
+                System.out.println("从旧版数据文件迁移: " + legacy);
+                loadFromFile(legacy, progress);
+                replayLegacyJournal(legacy + ".journal");
+                saveToFile();
+                return;
+            }
+        }
+        System.out.println("数据文件不存在，将创建新文件");
+    }
+
+    // 只加载了部分历史时，借阅次数不能由内存中的记录算出，改用保存时写下的次数（之后重放日志的借书继续累加）
+    // 旧版本保存的目录没有次数文件，只能读入全部历史，下次保存后不再需要
+    private void restoreBorrowCounts() throws IOException {
+        Map<String, Long> saved = dataStore.loadBorrowCounts();
+        if (saved == null) {
+            loadHistory();
+            statistics.rebuild(records, getBookCount());
+            return;
+        }
+
+        long[] counts = new long[getBookCount()];
+        saved.forEach((bookId, count) -> {
+            Book book = booksById.get(bookId);
+            if (book != null) {
+                counts[book.getOrdinal()] = count;
+            }
+        });
+        statistics.setBorrowCounts(counts);
+    }
+
+    // 把数据目录中尚未读入内存的借阅历史读入，供需要列出全部借阅记录的导出使用；借阅次数已包含这些记录。
+    // 全部已在内存中时立即返回。读入的都是已归还的记录，不影响借还
+    public void loadHistory() {
+        if (!historyPending) return;
+        synchronized (saveLock) {
+            if (!historyPending) return;
+            long start = metrics.start();
+            try {
+                dataStore.loadHistory(loaded -> {
+                    mutations.enter();
+                    try {
+                        for (LibraryFileLoader.RecordLine line : loaded.getRecords()) {
+                            Book book = booksById.get(line.bookId);
+                            if (book != null && membersById.containsKey(line.memberId)) {
+                                records.add(book, line.memberId, line.borrowDate, line.dueDate, true);
+                            }
+                        }
+                    } finally {
+                        mutations.exit();
+                    }
+                });
+                historyPending = false;
+                metrics.record(LibraryMetrics.Operation.LOAD, start);
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("加载借阅历史失败: " + e.getMessage());
+            }
+        }
+    }
+
+    // 迁移时重放旧日志中快照之后的修改（此时未启用日志，不会重新记录）；旧文件保留不动
+    private void replayLegacyJournal(String journalFile) {
+        LibraryJournal legacy = new LibraryJournal(journalFile);
+        try {
+            List<String[]> entries = legacy.readEntries(snapshotSeq);
+            for (String[] parts : entries) {
+                replayEntry(parts);
+            }
+            snapshotSeq = legacy.getLastSeq();
+        } catch (IOException e) {
+            System.err.println("读取旧日志失败: " + e.getMessage());
+        }
+    }
+
+    // 加载单个数据文件（saveToFile(String) 导出的格式）。只能在解析阶段取消，取消时 Library 保持不变
+    public void loadFromFile(String path, TaskProgress progress) {
+        long start = metrics.start();
+        File file = new File(path);
         if (!file.exists()) {
             System.out.println("数据文件不存在，将创建新文件");
             return;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty() || line.startsWith("#")) continue; // 跳过注释和空行
-
-                String[] parts = line.split(",");
-                if (parts.length < 2) continue;
-
-                String type = parts[0];
-                switch (type) {
-                    case "BOOK":
-                        loadBook(parts);
-                        break;
-                    case "MEMBER":
-                        loadMember(parts);
-                        break;
-                    case "RECORD":
-                        loadRecord(parts);
-                        break;
-                }
+        try {
+            LibraryFileLoader loaded;
+            try {
+                loaded = LibraryFileLoader.load(file.toPath(), progress);
+            } catch (CancellationException e) {
+                System.out.println("数据加载已取消");
+                return;
             }
+            applyLoaded(loaded, start);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("加载数据失败: " + e.getMessage());
+        }
+    }
+
+    private void applyLoaded(LibraryFileLoader loaded, long start) {
+        for (Book book : loaded.getBooks()) {
+            addBook(book);
+        }
+        for (Member member : loaded.getMembers()) {
+            addMember(member);
+        }
+        // 图书和成员全部加入后再关联借阅记录
+        for (LibraryFileLoader.RecordLine line : loaded.getRecords()) {
+            loadRecord(line.bookId, line.memberId, line.borrowDate, line.dueDate, line.returned);
+        }
+        finishLoad(loaded.getJournalSeq());
+        metrics.record(LibraryMetrics.Operation.LOAD, start);
+        System.out.println("数据加载成功！");
+    }
+
+    public void loadFromBinaryFile(String path) {
+        long start = metrics.start();
+        try {
+            BinarySnapshot.read(this, Paths.get(path));
+            metrics.record(LibraryMetrics.Operation.LOAD, start);
             System.out.println("数据加载成功！");
         } catch (IOException e) {
             System.err.println("加载数据失败: " + e.getMessage());
         }
     }
 
+    public void saveToBinaryFile(String path) {
+        long start = metrics.start();
+        try {
+            BinarySnapshot.write(this, Paths.get(path));
+            metrics.record(LibraryMetrics.Operation.SAVE, start);
+            System.out.println("数据已保存到 " + path);
+        } catch (IOException e) {
+            System.err.println("保存数据失败: " + e.getMessage());
+        }
+    }
+
+    // 加载完成后重建统计，journalSeq < 0 表示快照中没有日志序号
+    void finishLoad(long journalSeq) {
+        if (journalSeq >= 0) {
+            snapshotSeq = journalSeq;
+        }
+        statistics.rebuild(records, getBookCount());
+    }
+
+    private long currentJournalSeq() {
+        return journal != null ? journal.getLastSeq() : snapshotSeq;
+    }
+
     private void loadBook(String[] parts) {
+        Book book = parseBook(parts);
+        if (book != null) {
+            addBook(book);
+        }
+    }
+
+    private void loadMember(String[] parts) {
+        addMember(parseMember(parts));
+    }
+
+    // formatBook 格式的字段，未知类型返回 null
+    static Book parseBook(String[] parts) {
         String bookType = parts[1];
         String id = parts[2];
         String title = parts[3];
@@ -189,33 +675,23 @@ public class Library {
         int copies = Integer.parseInt(parts[5]);
 
         if ("PRINTED".equals(bookType)) {
-            addBook(new PrintedBook(id, title, author, copies));
+            return new PrintedBook(id, title, author, copies);
         } else if ("EBOOK".equals(bookType)) {
-            addBook(new EBook(id, title, author));
+            return new EBook(id, title, author);
         }
+        return null;
     }
 
-    private void loadMember(String[] parts) {
-        int id = Integer.parseInt(parts[1]);
-        String name = parts[2];
-        addMember(new Member(id, name));
+    static Member parseMember(String[] parts) {
+        return new Member(Integer.parseInt(parts[1]), parts[2]);
     }
 
-    private void loadRecord(String[] parts) {
-        String bookId = parts[1];
-        int memberId = Integer.parseInt(parts[2]);
-        LocalDate borrowDate = LocalDate.parse(parts[3]);
-        LocalDate dueDate = LocalDate.parse(parts[4]);
-        boolean returned = Boolean.parseBoolean(parts[5]);
-
+    void loadRecord(String bookId, int memberId, LocalDate borrowDate, LocalDate dueDate, boolean returned) {
         Book book = booksById.get(bookId);
         Member member = membersById.get(memberId);
 
         if (book != null && member != null) {
-            BorrowRecord record = new BorrowRecord(book, member);
-            record.setReturned(returned);
-            // 注意：实际项目中可能需要修改BorrowRecord以支持设置日期
-            records.add(record);
+            records.add(book, memberId, borrowDate, dueDate, returned);
 
             if (!returned) {
                 book.borrowOne(); // 更新库存
@@ -223,40 +699,283 @@ public class Library {
         }
     }
 
-    public void saveToFile() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DATA_FILE))) {
-            // 写入图书信息
-            writer.println("# Books");
-            for (Book book : booksById.values()) {
-                if (book instanceof PrintedBook) {
-                    writer.printf("BOOK,PRINTED,%s,%s,%s,%d\n",
-                            book.getId(), book.getTitle(), book.getAuthor(), book.getTotalCopies());
-                } else if (book instanceof EBook) {
-                    writer.printf("BOOK,EBOOK,%s,%s,%s,0\n",
-                            book.getId(), book.getTitle(), book.getAuthor());
-                }
+    // 日志模式：重放上次快照之后的修改，之后每次修改追加到日志
+    public void enableJournal() {
+        enableJournal(dataStore.journalFile().toString());
+    }
+
+    public void enableJournal(String journalFile) {
+        LibraryJournal replayed = new LibraryJournal(journalFile);
+        try {
+            List<String[]> entries = replayed.readEntries(snapshotSeq);
+            for (String[] parts : entries) {
+                replayEntry(parts);
             }
+            replayed.open();
+            journal = replayed;
+            if (!entries.isEmpty()) {
+                System.out.println("已从日志恢复 " + entries.size() + " 条修改");
+            }
+        } catch (IOException e) {
+            System.err.println("打开日志失败: " + e.getMessage());
+        }
+    }
+
+    // 停止自动保存并等待正在进行的后台保存完成，然后释放借阅记录存储、关闭日志
+    public void close() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = checkpointer;
+            checkpointer = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            records.close();
+        } catch (IOException e) {
+            System.err.println("关闭借阅记录文件失败: " + e.getMessage());
+        }
+
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("关闭日志失败: " + e.getMessage());
+        }
+    }
+
+    private void replayEntry(String[] parts) {
+        switch (parts[0]) {
+            case "BOOK":
+                loadBook(parts);
+                break;
+            case "MEMBER":
+                loadMember(parts);
+                break;
+            case "BORROW":
+                replayBorrow(parts);
+                break;
+            case "RETURN":
+                returnBook(Integer.parseInt(parts[2]), parts[1]);
+                break;
+        }
+    }
+
+    // 按日志中的日期重新借出，重启后应还日和逾期判断保持不变
+    private void replayBorrow(String[] parts) {
+        Book book = booksById.get(parts[1]);
+        Member member = membersById.get(Integer.parseInt(parts[2]));
+        if (book == null || member == null) return;
+
+        if (parts.length >= 5) {
+            doBorrow(member, book, LocalDate.parse(parts[3]), LocalDate.parse(parts[4]));
+        } else {
+            doBorrow(member, book, null, null);
+        }
+    }
+
+    private void appendJournal(String entry) {
+        if (journal == null || entry == null) return;
+        try {
+            journal.append(entry);
+        } catch (IOException e) {
+            System.err.println("写入日志失败: " + e.getMessage());
+        }
+    }
+
+    // 必须在 mutations.exit 之后调用；日志过长时在后台保存一次，调用者不等待
+    private void compactIfNeeded() {
+        LibraryJournal current = journal;
+        if (current != null && current.needsCompaction() && compactionQueued.compareAndSet(false, true)) {
+            checkpointer().execute(() -> {
+                try {
+                    saveQuietly();
+                } finally {
+                    compactionQueued.set(false);
+                }
+            });
+        }
+    }
+
+    // 在后台线程保存到数据文件，借还不受影响
+    public Future<?> checkpointAsync() {
+        return checkpointer().submit(this::saveQuietly);
+    }
+
+    // 每隔 period 在后台保存一次，close 时停止
+    public void startAutosave(long period, TimeUnit unit) {
+        checkpointer().scheduleWithFixedDelay(this::saveQuietly, period, period, unit);
+    }
+
+    // 设置了 -Dlibrary.autosave.seconds=N（N > 0）时每 N 秒自动保存
+    public void startAutosaveIfConfigured() {
+        long seconds = Long.getLong("library.autosave.seconds", 0);
+        if (seconds > 0) {
+            startAutosave(seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private synchronized ScheduledExecutorService checkpointer() {
+        if (checkpointer == null) {
+            checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "library-checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return checkpointer;
+    }
+
+    // 后台保存的异常不能终止定时任务
+    private void saveQuietly() {
+        try {
+            saveToFile();
+        } catch (RuntimeException e) {
+            System.err.println("后台保存失败: " + e.getMessage());
+        }
+    }
+
+    static String formatBook(Book book) {
+        if (book instanceof PrintedBook) {
+            return String.format("BOOK,PRINTED,%s,%s,%s,%d",
+                    book.getId(), book.getTitle(), book.getAuthor(), book.getTotalCopies());
+        } else if (book instanceof EBook) {
+            return String.format("BOOK,EBOOK,%s,%s,%s,0",
+                    book.getId(), book.getTitle(), book.getAuthor());
+        }
+        return null;
+    }
+
+    static String formatMember(Member member) {
+        return String.format("MEMBER,%d,%s", member.getId(), member.getName());
+    }
+
+    static String formatRecord(BorrowRecord record) {
+        return String.format("RECORD,%s,%d,%s,%s,%b",
+                record.getBook().getId(),
+                record.getMemberId(),
+                record.getBorrowDate(),
+                record.getDueDate(),
+                record.isReturned());
+    }
+
+    // 保存到数据目录；日志模式下快照写成功后截断日志
+    public void saveToFile() {
+        saveToFile(TaskProgress.NONE);
+    }
 
-            writer.println("\n# Members");
-            // 写入成员信息
-            for (Member member : membersById.values()) {
-                writer.printf("MEMBER,%d,%s\n", member.getId(), member.getName());
+    // 按已写入的借阅记录分片数报告进度；保存开始后不能取消
+    // 只在生成快照时短暂阻塞修改，写文件期间借还照常进行。只重写上次保存之后有变化的文件：
+    // 图书、成员，以及有借出或归还的月份的借阅记录（首次保存时全部写出）
+    // 日志模式下写完后从日志中去掉快照已包含的条目，之后的修改仍保留在日志中
+    // 写数据文件失败时返回 false：变化标记放回，修改仍保留在日志中
+    public boolean saveToFile(TaskProgress progress) {
+        synchronized (saveLock) {
+            // 快照与变化标记在同一次暂停修改期间取得，之后的修改计入下一次保存
+            LibrarySnapshot snapshot;
+            Set<Integer> months;
+            boolean books;
+            boolean members;
+            mutations.pause();
+            try {
+                snapshot = snapshot();
+                months = records.drainDirtyMonths();
+                books = booksDirty.getAndSet(false);
+                members = membersDirty.getAndSet(false);
+            } finally {
+                mutations.resume();
             }
 
-            writer.println("\n# BorrowRecords");
-            // 写入借阅记录
-            for (BorrowRecord record : records) {
-                writer.printf("RECORD,%s,%d,%s,%s,%b\n",
-                        record.getBook().getId(),
-                        record.getMember().getId(),
-                        record.getBorrowDate(),
-                        record.getDueDate(),
-                        record.isReturned());
+            long start = metrics.start();
+            try {
+                dataStore.save(snapshot, months, books, members, progress);
+                metrics.record(LibraryMetrics.Operation.SAVE, start);
+                System.out.println("数据已保存到 " + dataStore.getDir());
+            } catch (IOException | UncheckedIOException e) {
+                // 放回变化标记，下次保存时重写
+                records.markDirty(months);
+                booksDirty.compareAndSet(false, books);
+                membersDirty.compareAndSet(false, members);
+                System.err.println("保存数据失败: " + e.getMessage());
+                return false;
             }
+            snapshotSeq = snapshot.getJournalSeq();
+
+            LibraryJournal current = journal;
+            if (current != null) {
+                try {
+                    current.compact(snapshot.getJournalSeq());
+                } catch (IOException e) {
+                    System.err.println("压缩日志失败: " + e.getMessage());
+                }
+            }
+            return true;
+        }
+    }
+
+    // 导出为单个数据文件，不影响数据目录和日志
+    public void saveToFile(String path) {
+        loadHistory();
+        writeTextFile(path, snapshot(), TaskProgress.NONE);
+    }
 
-            System.out.println("数据已保存到 " + DATA_FILE);
+    // 通过 AtomicFile 写入：中途失败或崩溃时原数据文件不受影响
+    private boolean writeTextFile(String path, LibrarySnapshot snapshot, TaskProgress progress) {
+        long start = metrics.start();
+        try {
+            AtomicFile.write(Paths.get(path), channel -> writeText(channel, snapshot, progress));
+            metrics.record(LibraryMetrics.Operation.SAVE, start);
+            System.out.println("数据已保存到 " + path);
+            return true;
         } catch (IOException e) {
             System.err.println("保存数据失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void writeText(FileChannel channel, LibrarySnapshot snapshot, TaskProgress progress)
+            throws IOException {
+        PrintWriter writer = new PrintWriter(new BufferedWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 1 << 16)));
+        writer.print(JOURNAL_SEQ_HEADER + snapshot.getJournalSeq() + "\n");
+
+        // 写入图书信息
+        writer.println("# Books");
+        for (Book book : snapshot.getBooks()) {
+            String line = formatBook(book);
+            if (line != null) {
+                writer.print(line + "\n");
+            }
+        }
+
+        writer.println("\n# Members");
+        // 写入成员信息
+        for (Member member : snapshot.getMembers()) {
+            writer.print(formatMember(member) + "\n");
+        }
+
+        writer.println("\n# BorrowRecords");
+        // 写入借阅记录
+        List<BorrowRecord> history = snapshot.getRecords();
+        int total = history.size();
+        int written = 0;
+        for (BorrowRecord record : history) {
+            if (++written % 10000 == 0) {
+                progress.update(written, total);
+            }
+            writer.print(formatRecord(record) + "\n");
+        }
+
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("写入数据文件出错");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,347 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// 数据文件的并行加载器：
+// 1. 内存映射文件并按行边界切成若干块
+// 2. 各块并行解析（逐字节扫描逗号，不用 split/正则）
+// 3. 结果按文件顺序合并，RECORD 行由 Library 在图书和成员全部加入后再关联
+// 只加载未归还记录时（loadActive），已归还的 RECORD 行不解析，只记下行首在文件中的偏移，之后用 loadLines 按需读取
+public class LibraryFileLoader {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;    // 1MB
+    private static final int MAX_CHUNK_SIZE = 1 << 28;    // 256MB，单次映射上限
+    private static final byte[] JOURNAL_SEQ_HEADER = "# journal-seq=".getBytes(StandardCharsets.US_ASCII);
+
+    private final List<Book> books = new ArrayList<>();
+    private final List<Member> members = new ArrayList<>();
+    private final List<RecordLine> records = new ArrayList<>();
+    private long journalSeq = -1;
+    // 只加载未归还记录时跳过的已归还行的偏移，按文件顺序；为 null 时解析全部行
+    private IntList returnedOffsets;
+    // 解析单行用的缓冲区
+    private byte[] line = new byte[256];
+    private final int[] ends = new int[8];
+
+    // 解析后的 RECORD 行，尚未关联图书和成员
+    public static class RecordLine {
+        final String bookId;
+        final int memberId;
+        final LocalDate borrowDate;
+        final LocalDate dueDate;
+        final boolean returned;
+
+        RecordLine(String bookId, int memberId, LocalDate borrowDate, LocalDate dueDate, boolean returned) {
+            this.bookId = bookId;
+            this.memberId = memberId;
+            this.borrowDate = borrowDate;
+            this.dueDate = dueDate;
+            this.returned = returned;
+        }
+    }
+
+    public static LibraryFileLoader load(Path file) throws IOException {
+        return load(file, TaskProgress.NONE);
+    }
+
+    // 按已解析的字节数报告进度；取消时抛出 CancellationException
+    public static LibraryFileLoader load(Path file, TaskProgress progress) throws IOException {
+        return load(file, progress, false);
+    }
+
+    // 只解析未归还的借阅记录（以及图书、成员），已归还的记录留在磁盘上，偏移见 getReturnedOffsets
+    // 偏移用 int 保存，超过 2GB 的文件仍全部解析
+    public static LibraryFileLoader loadActive(Path file) throws IOException {
+        return load(file, TaskProgress.NONE, Files.size(file) <= Integer.MAX_VALUE);
+    }
+
+    // 解析文件中从给定偏移开始的各行（loadActive 记下的偏移）
+    public static LibraryFileLoader loadLines(Path file, int[] offsets) throws IOException {
+        LibraryFileLoader result = new LibraryFileLoader();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (int offset : offsets) {
+                result.parseLineAt(buffer, offset, offset);
+            }
+        }
+        return result;
+    }
+
+    private static LibraryFileLoader load(Path file, TaskProgress progress, boolean activeOnly) throws IOException {
+        LibraryFileLoader result = new LibraryFileLoader();
+        if (activeOnly) {
+            result.returnedOffsets = new IntList();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            AtomicLong parsedBytes = new AtomicLong();
+            List<long[]> ranges = splitChunks(channel);
+            List<LibraryFileLoader> parsed = ranges.parallelStream()
+                    .map(range -> {
+                        if (progress.isCancelled()) {
+                            throw new CancellationException();
+                        }
+                        LibraryFileLoader chunk = parseChunk(channel, range[0], range[1], activeOnly);
+                        progress.update(parsedBytes.addAndGet(range[1] - range[0]), size);
+                        return chunk;
+                    })
+                    .collect(Collectors.toList());
+
+            for (LibraryFileLoader chunk : parsed) {
+                result.append(chunk);
+            }
+        }
+        return result;
+    }
+
+    // 把另一个文件（或块）的解析结果按顺序接在后面，用于合并分文件保存的数据
+    void append(LibraryFileLoader other) {
+        books.addAll(other.books);
+        members.addAll(other.members);
+        records.addAll(other.records);
+        if (returnedOffsets != null && other.returnedOffsets != null) {
+            for (int offset : other.returnedOffsets.toArray()) {
+                returnedOffsets.add(offset);
+            }
+        }
+        if (other.journalSeq >= 0) {
+            journalSeq = other.journalSeq;
+        }
+    }
+
+    void setJournalSeq(long journalSeq) {
+        this.journalSeq = journalSeq;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    public List<RecordLine> getRecords() {
+        return records;
+    }
+
+    // loadActive 跳过的已归还记录的行首偏移；全部解析时为 null
+    public int[] getReturnedOffsets() {
+        return returnedOffsets == null ? null : returnedOffsets.toArray();
+    }
+
+    // 快照头部记录的日志序号，没有时为 -1
+    public long getJournalSeq() {
+        return journalSeq;
+    }
+
+    // 把文件切成 [start, end) 区间，每个区间都以换行结束（最后一块除外）
+    private static List<long[]> splitChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (parallelism * 4L) + 1));
+
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            // 向后找到下一个换行，保证块按行对齐
+            while (end < size) {
+                probe.clear();
+                int n = channel.read(probe, end);
+                if (n <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < n; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += n;
+            }
+            ranges.add(new long[]{start, Math.min(end, size)});
+            start = end;
+        }
+        return ranges;
+    }
+
+    private static LibraryFileLoader parseChunk(FileChannel channel, long start, long end, boolean activeOnly) {
+        LibraryFileLoader chunk = new LibraryFileLoader();
+        if (activeOnly) {
+            chunk.returnedOffsets = new IntList();
+        }
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            int length = buffer.limit();
+            int pos = 0;
+            while (pos < length) {
+                pos = chunk.parseLineAt(buffer, pos, start + pos);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    // 解析 buffer 中从 pos 开始的一行，fileOffset 为该行在文件中的偏移；返回下一行的开始位置
+    private int parseLineAt(MappedByteBuffer buffer, int pos, long fileOffset) {
+        int length = buffer.limit();
+        int lineEnd = pos;
+        while (lineEnd < length && buffer.get(lineEnd) != '\n') {
+            lineEnd++;
+        }
+
+        // 与 String.trim() 一致，去掉两端 <= ' ' 的字符（含 \r）
+        int from = pos;
+        int to = lineEnd;
+        while (from < to && (buffer.get(from) & 0xff) <= ' ') from++;
+        while (to > from && (buffer.get(to - 1) & 0xff) <= ' ') to--;
+
+        int len = to - from;
+        if (len > 0) {
+            if (line.length < len) {
+                line = new byte[Math.max(len, line.length * 2)];
+            }
+            buffer.get(from, line, 0, len);
+            parseLine(line, len, ends, fileOffset);
+        }
+        return lineEnd + 1;
+    }
+
+    private void parseLine(byte[] line, int len, int[] ends, long fileOffset) {
+        if (line[0] == '#') {
+            if (startsWith(line, len, JOURNAL_SEQ_HEADER)) {
+                journalSeq = parseLong(line, JOURNAL_SEQ_HEADER.length, len);
+            }
+            return;
+        }
+
+        // ends[i] 为第 i 个字段的结束位置；与 split(",") 一样忽略末尾的空字段
+        int fieldsEnd = len;
+        while (fieldsEnd > 0 && line[fieldsEnd - 1] == ',') fieldsEnd--;
+        int fieldCount = 0;
+        for (int i = 0; i < fieldsEnd && fieldCount < ends.length; i++) {
+            if (line[i] == ',') {
+                ends[fieldCount++] = i;
+            }
+        }
+        if (fieldCount < ends.length) {
+            ends[fieldCount++] = fieldsEnd;
+        }
+        if (fieldCount < 2) return;
+
+        if (fieldEquals(line, 0, ends[0], "BOOK")) {
+            requireFields(line, len, fieldCount, 6);
+            String bookType = field(line, ends, 1);
+            String id = field(line, ends, 2);
+            String title = field(line, ends, 3);
+            String author = field(line, ends, 4);
+            int copies = (int) parseLong(line, ends[4] + 1, ends[5]);
+
+            if ("PRINTED".equals(bookType)) {
+                books.add(new PrintedBook(id, title, author, copies));
+            } else if ("EBOOK".equals(bookType)) {
+                books.add(new EBook(id, title, author));
+            }
+        } else if (fieldEquals(line, 0, ends[0], "MEMBER")) {
+            requireFields(line, len, fieldCount, 3);
+            int id = (int) parseLong(line, ends[0] + 1, ends[1]);
+            members.add(new Member(id, field(line, ends, 2)));
+        } else if (fieldEquals(line, 0, ends[0], "RECORD")) {
+            requireFields(line, len, fieldCount, 6);
+            if (returnedOffsets != null && fieldEqualsIgnoreCase(line, ends[4] + 1, ends[5], "true")) {
+                returnedOffsets.add((int) fileOffset);
+                return;
+            }
+            String bookId = field(line, ends, 1);
+            int memberId = (int) parseLong(line, ends[1] + 1, ends[2]);
+            LocalDate borrowDate = parseDate(line, ends[2] + 1, ends[3]);
+            LocalDate dueDate = parseDate(line, ends[3] + 1, ends[4]);
+            boolean returned = fieldEqualsIgnoreCase(line, ends[4] + 1, ends[5], "true");
+            records.add(new RecordLine(bookId, memberId, borrowDate, dueDate, returned));
+        }
+    }
+
+    private static void requireFields(byte[] line, int len, int fieldCount, int required) {
+        if (fieldCount < required) {
+            throw new IllegalArgumentException("数据行字段不足: " + new String(line, 0, len, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String field(byte[] line, int[] ends, int index) {
+        int from = ends[index - 1] + 1;
+        int to = ends[index];
+        return new String(line, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static boolean fieldEquals(byte[] line, int from, int to, String expected) {
+        if (to - from != expected.length()) return false;
+        for (int i = 0; i < expected.length(); i++) {
+            if (line[from + i] != expected.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean fieldEqualsIgnoreCase(byte[] line, int from, int to, String expected) {
+        if (to - from != expected.length()) return false;
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase((char) line[from + i]) != expected.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] line, int len, byte[] prefix) {
+        if (len < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static long parseLong(byte[] line, int from, int to) {
+        boolean negative = from < to && line[from] == '-';
+        int i = negative || (from < to && line[from] == '+') ? from + 1 : from;
+        if (i >= to) {
+            throw new NumberFormatException(new String(line, from, to - from, StandardCharsets.UTF_8));
+        }
+
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(new String(line, from, to - from, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // 快速解析 yyyy-MM-dd，其他格式交给 LocalDate.parse
+    private static LocalDate parseDate(byte[] line, int from, int to) {
+        if (to - from == 10 && line[from + 4] == '-' && line[from + 7] == '-') {
+            int year = (int) parseLong(line, from, from + 4);
+            int month = (int) parseLong(line, from + 5, from + 7);
+            int day = (int) parseLong(line, from + 8, from + 10);
+            return LocalDate.of(year, month, day);
+        }
+        return LocalDate.parse(new String(line, from, to - from, StandardCharsets.UTF_8));
+    }
+}
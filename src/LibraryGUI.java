@@ -1,22 +1,30 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 import java.util.List;
 
 public class LibraryGUI extends JFrame {
     private Library library;
+    private LibraryService service;
+    private boolean loaded; // 加载完成前不允许修改数据，也不在退出时保存
+    private boolean closing;
     private JTabbedPane tabbedPane;
 
     // 图书相关组件
     private JTable booksTable;
-    private DefaultTableModel booksTableModel;
+    private BookTableModel booksTableModel;
     private JTextField searchField;
 
     // 成员相关组件
     private JTable membersTable;
-    private DefaultTableModel membersTableModel;
+    private MemberTableModel membersTableModel;
 
     // 借阅相关组件
     private JTextField borrowMemberField;
@@ -24,17 +32,50 @@ public class LibraryGUI extends JFrame {
     private JTextField returnMemberField;
     private JTextField returnBookField;
 
+    // 统计和状态栏组件
+    private JTextArea statsArea;
+    private JLabel statusLabel;
+    private JProgressBar progressBar;
+    private JButton cancelTaskButton;
+    private JLabel dataStatus;
+    private LibraryTask<?> trackedTask;
+    private OverdueNotifier overdueNotifier; // 加载完成后启动，退出时停止
+
     public LibraryGUI() {
         library = new Library();
-        library.loadFromFile();
+        service = new LibraryService(library, error ->
+                JOptionPane.showMessageDialog(this, "操作失败: " + error.getMessage(), "错误", JOptionPane.ERROR_MESSAGE));
 
         setTitle("图书管理系统");
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         setSize(1000, 700);
         setLocationRelativeTo(null);
 
+        // 窗口关闭时在后台保存，保存完成后退出
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent windowEvent) {
+                saveAndExit();
+            }
+        });
+
         initComponents();
-        loadInitialData();
+
+        // 运行指标注册到 JMX，可在 jconsole 中查看或开关
+        try {
+            library.getMetrics().addExporter(new JmxMetricsExporter());
+        } catch (Exception e) {
+            System.err.println("注册指标 MBean 失败: " + e.getMessage());
+        }
+
+        // 数据在后台加载，窗口先显示出来
+        track(service.load(() -> {
+            loaded = true;
+            dataStatus.setText("数据已加载 ");
+            loadInitialData();
+            updateStatistics();
+            startOverdueNotifier();
+        }));
     }
 
     private void initComponents() {
@@ -73,8 +114,25 @@ public class LibraryGUI extends JFrame {
         searchField = new JTextField(20);
         searchPanel.add(searchField);
 
+        // 边输入边搜索，旧的搜索结果由 LibraryService 丢弃
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchBooks(false);
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchBooks(false);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
         JButton searchButton = new JButton("搜索");
-        searchButton.addActionListener(e -> searchBooks());
+        searchButton.addActionListener(e -> searchBooks(true));
         searchPanel.add(searchButton);
 
         topPanel.add(searchPanel, BorderLayout.WEST);
@@ -95,13 +153,7 @@ public class LibraryGUI extends JFrame {
         panel.add(topPanel, BorderLayout.NORTH);
 
         // 图书表格
-        String[] columns = {"ID", "类型", "标题", "作者", "可用/总数", "状态"};
-        booksTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // 表格不可编辑
-            }
-        };
+        booksTableModel = new BookTableModel(library); // 表格不可编辑，按需读取行
 
         booksTable = new JTable(booksTableModel);
         booksTable.setRowHeight(25);
@@ -149,13 +201,7 @@ public class LibraryGUI extends JFrame {
         panel.add(topPanel, BorderLayout.NORTH);
 
         // 成员表格
-        String[] columns = {"ID", "姓名", "当前借阅数"};
-        membersTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        membersTableModel = new MemberTableModel(library);
 
         membersTable = new JTable(membersTableModel);
         membersTable.setRowHeight(25);
@@ -263,7 +309,7 @@ public class LibraryGUI extends JFrame {
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         // 创建文本区域显示统计信息
-        JTextArea statsArea = new JTextArea();
+        statsArea = new JTextArea();
         statsArea.setEditable(false);
         statsArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
 
@@ -272,12 +318,9 @@ public class LibraryGUI extends JFrame {
 
         // 刷新按钮
         JButton refreshButton = new JButton("刷新统计");
-        refreshButton.addActionListener(e -> updateStatistics(statsArea));
+        refreshButton.addActionListener(e -> updateStatistics());
         panel.add(refreshButton, BorderLayout.SOUTH);
 
-        // 初始加载统计
-        updateStatistics(statsArea);
-
         return panel;
     }
 
@@ -285,87 +328,150 @@ public class LibraryGUI extends JFrame {
         JPanel statusBar = new JPanel(new BorderLayout());
         statusBar.setBorder(BorderFactory.createEtchedBorder());
 
-        JLabel statusLabel = new JLabel(" 就绪");
+        statusLabel = new JLabel(" 就绪");
         statusLabel.setHorizontalAlignment(SwingConstants.LEFT);
         statusBar.add(statusLabel, BorderLayout.WEST);
 
-        JLabel dataStatus = new JLabel("数据已加载 ");
+        // 后台任务的进度条和取消按钮，没有任务时隐藏
+        JPanel taskPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 0));
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        taskPanel.add(progressBar);
+
+        cancelTaskButton = new JButton("取消");
+        cancelTaskButton.setVisible(false);
+        cancelTaskButton.addActionListener(e -> {
+            if (trackedTask != null) {
+                trackedTask.cancel(false);
+            }
+        });
+        taskPanel.add(cancelTaskButton);
+        statusBar.add(taskPanel, BorderLayout.CENTER);
+
+        dataStatus = new JLabel("数据加载中... ");
         dataStatus.setHorizontalAlignment(SwingConstants.RIGHT);
         statusBar.add(dataStatus, BorderLayout.EAST);
 
         return statusBar;
     }
 
+    // 在状态栏显示任务的进度，任务结束后恢复
+    private void track(LibraryTask<?> task) {
+        trackedTask = task;
+        statusLabel.setText(" " + task.getName() + "...");
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        cancelTaskButton.setVisible(true);
+
+        task.addPropertyChangeListener(e -> {
+            if (task != trackedTask) return;
+
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setValue((Integer) e.getNewValue());
+            } else if ("state".equals(e.getPropertyName()) && e.getNewValue() == SwingWorker.StateValue.DONE) {
+                trackedTask = null;
+                progressBar.setVisible(false);
+                cancelTaskButton.setVisible(false);
+                statusLabel.setText(task.isCancelled() ? " " + task.getName() + "已取消" : " 就绪");
+            }
+        });
+    }
+
+    private boolean checkLoaded() {
+        if (!loaded) {
+            JOptionPane.showMessageDialog(this, "数据加载中，请稍候", "提示", JOptionPane.WARNING_MESSAGE);
+        }
+        return loaded;
+    }
+
+    // 加载未完成（或已取消）时不保存，避免不完整的数据覆盖数据文件
+    private void saveAndExit() {
+        if (closing) return;
+        closing = true;
+
+        if (!loaded) {
+            if (trackedTask != null) {
+                trackedTask.cancel(false);
+            }
+            service.shutdown();
+            System.exit(0);
+        }
+
+        track(service.save(this::closeAndExit, error -> {
+            // 保存失败：可以不保存直接退出（修改已在日志中，下次启动时恢复），否则留在窗口中稍后重试
+            int choice = JOptionPane.showConfirmDialog(this,
+                    "保存失败: " + error.getMessage() + "\n修改已记录在日志中，下次启动时恢复。仍然退出吗？",
+                    "错误", JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE);
+            if (choice == JOptionPane.YES_OPTION) {
+                closeAndExit();
+            }
+            closing = false;
+        }));
+        cancelTaskButton.setVisible(false); // 退出前的保存不允许取消
+    }
+
+    private void closeAndExit() {
+        overdueNotifier.stop();
+        library.close();
+        System.exit(0);
+    }
+
+    // 启动后立即检查一次逾期借阅，之后每小时一次；逐条提醒写到标准错误，总数显示在状态栏右侧
+    private void startOverdueNotifier() {
+        overdueNotifier = new OverdueNotifier(library, OverdueNotifier.DEFAULT_BATCH_SIZE, batch -> {
+            for (BorrowRecord record : batch) {
+                System.err.println(LoanMessages.overdue(record, library.getMember(record.getMemberId())));
+            }
+        }, total -> SwingUtilities.invokeLater(() -> dataStatus.setText(
+                total > 0 ? LoanMessages.overdueReminder(total) + " " : "数据已加载 ")));
+        overdueNotifier.start(1, TimeUnit.HOURS);
+    }
+
     private void loadInitialData() {
         refreshBooks();
         refreshMembers();
     }
 
     private void refreshBooks() {
-        booksTableModel.setRowCount(0);
-        List<Book> books = library.listBooks();
-
-        for (Book book : books) {
-            String type = book instanceof EBook ? "电子书" : "印刷书";
-            String status = book.canBorrow() ? "可借阅" : "不可借阅";
-
-            booksTableModel.addRow(new Object[]{
-                    book.getId(),
-                    type,
-                    book.getTitle(),
-                    book.getAuthor(),
-                    book.getAvailableCopies() + "/" + book.getTotalCopies(),
-                    status
-            });
-        }
+        booksTableModel.showCatalog();
     }
 
     private void refreshMembers() {
-        membersTableModel.setRowCount(0);
-        List<Member> members = library.listMembers();
-
-        for (Member member : members) {
-            List<BorrowRecord> borrowed = library.getMemberBorrowedBooks(member.getId());
-            int borrowCount = borrowed.size();
-
-            membersTableModel.addRow(new Object[]{
-                    member.getId(),
-                    member.getName(),
-                    borrowCount
-            });
-        }
+        membersTableModel.refresh();
     }
 
-    private void searchBooks() {
+    // 借还后只刷新受影响的图书行和成员行
+    private void refreshLoan(Member member, Book book) {
+        booksTableModel.bookChanged(book);
+        membersTableModel.memberChanged(member);
+    }
+
+    // explicit 为 true 表示点击了搜索按钮，此时没有结果会弹出提示；输入时只在状态栏显示
+    private void searchBooks(boolean explicit) {
+        if (!loaded) return;
+
         String keyword = searchField.getText().trim();
         if (keyword.isEmpty()) {
+            service.cancelSearch();
             refreshBooks();
+            statusLabel.setText(" 就绪");
             return;
         }
 
-        booksTableModel.setRowCount(0);
-        List<Book> results = library.searchBooksByTitle(keyword);
-
-        for (Book book : results) {
-            String type = book instanceof EBook ? "电子书" : "印刷书";
-            String status = book.canBorrow() ? "可借阅" : "不可借阅";
-
-            booksTableModel.addRow(new Object[]{
-                    book.getId(),
-                    type,
-                    book.getTitle(),
-                    book.getAuthor(),
-                    book.getAvailableCopies() + "/" + book.getTotalCopies(),
-                    status
-            });
-        }
+        service.search(keyword, results -> {
+            booksTableModel.showBooks(results);
+            statusLabel.setText(" 找到 " + results.size() + " 本图书");
 
-        if (results.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "未找到相关图书", "搜索结果", JOptionPane.INFORMATION_MESSAGE);
-        }
+            if (results.isEmpty() && explicit) {
+                JOptionPane.showMessageDialog(this, "未找到相关图书", "搜索结果", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
     }
 
     private void showAddBookDialog() {
+        if (!checkLoaded()) return;
+
         JDialog dialog = new JDialog(this, "添加图书", true);
         dialog.setLayout(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
@@ -479,6 +585,8 @@ public class LibraryGUI extends JFrame {
     }
 
     private void showAddMemberDialog() {
+        if (!checkLoaded()) return;
+
         JDialog dialog = new JDialog(this, "添加成员", true);
         dialog.setLayout(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
@@ -549,20 +657,24 @@ public class LibraryGUI extends JFrame {
     }
 
     private void borrowBook() {
+        if (!checkLoaded()) return;
+
         try {
             int memberId = Integer.parseInt(borrowMemberField.getText().trim());
             String bookId = borrowBookField.getText().trim().toUpperCase();
 
-            String result = library.borrowBook(memberId, bookId);
-            JOptionPane.showMessageDialog(this, result, "借书结果", JOptionPane.INFORMATION_MESSAGE);
+            LoanResult result = library.borrowBook(memberId, bookId);
+            JOptionPane.showMessageDialog(this, LoanMessages.borrowed(result), "借书结果",
+                    result.isSuccess() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
 
             // 清空输入框
             borrowMemberField.setText("");
             borrowBookField.setText("");
 
-            // 刷新显示
-            refreshBooks();
-            refreshMembers();
+            // 只有成功时库存和借阅数才会变化
+            if (result.isSuccess()) {
+                refreshLoan(result.getMember(), result.getBook());
+            }
 
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "成员ID必须是数字", "错误", JOptionPane.ERROR_MESSAGE);
@@ -570,20 +682,24 @@ public class LibraryGUI extends JFrame {
     }
 
     private void returnBook() {
+        if (!checkLoaded()) return;
+
         try {
             int memberId = Integer.parseInt(returnMemberField.getText().trim());
             String bookId = returnBookField.getText().trim().toUpperCase();
 
-            String result = library.returnBook(memberId, bookId);
-            JOptionPane.showMessageDialog(this, result, "还书结果", JOptionPane.INFORMATION_MESSAGE);
+            LoanResult result = library.returnBook(memberId, bookId);
+            JOptionPane.showMessageDialog(this, LoanMessages.returned(result), "还书结果",
+                    result.isSuccess() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
 
             // 清空输入框
             returnMemberField.setText("");
             returnBookField.setText("");
 
-            // 刷新显示
-            refreshBooks();
-            refreshMembers();
+            // 只有成功时库存和借阅数才会变化
+            if (result.isSuccess()) {
+                refreshLoan(result.getMember(), result.getBook());
+            }
 
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "成员ID必须是数字", "错误", JOptionPane.ERROR_MESSAGE);
@@ -591,41 +707,11 @@ public class LibraryGUI extends JFrame {
     }
 
     private void sortBooksByTitle() {
-        booksTableModel.setRowCount(0);
-        List<Book> books = library.listBooksSortedByTitle();
-
-        for (Book book : books) {
-            String type = book instanceof EBook ? "电子书" : "印刷书";
-            String status = book.canBorrow() ? "可借阅" : "不可借阅";
-
-            booksTableModel.addRow(new Object[]{
-                    book.getId(),
-                    type,
-                    book.getTitle(),
-                    book.getAuthor(),
-                    book.getAvailableCopies() + "/" + book.getTotalCopies(),
-                    status
-            });
-        }
+        booksTableModel.showBooks(library.listBooksSortedByTitle());
     }
 
     private void sortBooksByAuthor() {
-        booksTableModel.setRowCount(0);
-        List<Book> books = library.listBooksSortedByAuthor();
-
-        for (Book book : books) {
-            String type = book instanceof EBook ? "电子书" : "印刷书";
-            String status = book.canBorrow() ? "可借阅" : "不可借阅";
-
-            booksTableModel.addRow(new Object[]{
-                    book.getId(),
-                    type,
-                    book.getTitle(),
-                    book.getAuthor(),
-                    book.getAvailableCopies() + "/" + book.getTotalCopies(),
-                    status
-            });
-        }
+        booksTableModel.showBooks(library.listBooksSortedByAuthor());
     }
 
     private void showMemberBorrowedBooks() {
@@ -635,8 +721,9 @@ public class LibraryGUI extends JFrame {
             return;
         }
 
-        int memberId = (int) membersTableModel.getValueAt(selectedRow, 0);
-        String memberName = (String) membersTableModel.getValueAt(selectedRow, 1);
+        Member member = membersTableModel.getMemberAt(membersTable.convertRowIndexToModel(selectedRow));
+        int memberId = member.getId();
+        String memberName = member.getName();
 
         List<BorrowRecord> records = library.getMemberBorrowedBooks(memberId);
 
@@ -670,12 +757,20 @@ public class LibraryGUI extends JFrame {
         JOptionPane.showMessageDialog(this, scrollPane, "借阅详情", JOptionPane.INFORMATION_MESSAGE);
     }
 
-    private void updateStatistics(JTextArea statsArea) {
+    private void updateStatistics() {
+        if (!loaded) return;
+
+        track(service.submit("统计", this::buildStatistics, statsArea::setText));
+    }
+
+    // 在后台线程执行，按图书报告进度；各项数字取自同一个快照，统计期间借还不受影响
+    private String buildStatistics(TaskProgress progress) {
+        LibrarySnapshot snapshot = library.snapshot();
         StringBuilder sb = new StringBuilder();
 
         // 图书统计
         sb.append("===== 图书统计 =====\n");
-        List<Book> books = library.listBooks();
+        List<Book> books = snapshot.getBooks();
         long printedCount = books.stream().filter(b -> b instanceof PrintedBook).count();
         long ebookCount = books.stream().filter(b -> b instanceof EBook).count();
 
@@ -685,14 +780,14 @@ public class LibraryGUI extends JFrame {
 
         // 成员统计
         sb.append("===== 成员统计 =====\n");
-        List<Member> members = library.listMembers();
+        List<Member> members = snapshot.getMembers();
         sb.append("总成员数量: ").append(members.size()).append("\n\n");
 
         // 借阅统计
         sb.append("===== 借阅统计 =====\n");
 
         // 最活跃借阅者
-        Member mostActive = library.findMostActiveBorrower();
+        Member mostActive = snapshot.getMostActiveBorrower();
         if (mostActive != null) {
             sb.append("最活跃借阅者: ").append(mostActive.getName())
                     .append(" (ID: ").append(mostActive.getId()).append(")\n");
@@ -701,12 +796,24 @@ public class LibraryGUI extends JFrame {
         sb.append("\n图书借阅次数:\n");
         sb.append("----------------\n");
 
+        int done = 0;
         for (Book book : books) {
-            long count = library.getBookBorrowCount(book.getId());
+            if (done % 1000 == 0) {
+                if (progress.isCancelled()) {
+                    throw new CancellationException();
+                }
+                progress.update(done, books.size());
+            }
+            long count = snapshot.getBookBorrowCount(book);
             sb.append(String.format("%-25s: %d 次\n", book.getTitle(), count));
+            done++;
+        }
+
+        if (library.getMetrics().isEnabled()) {
+            sb.append("\n").append(library.getMetrics().snapshot().toText());
         }
 
-        statsArea.setText(sb.toString());
+        return sb.toString();
     }
 
     public static void main(String[] args) {
@@ -720,14 +827,6 @@ public class LibraryGUI extends JFrame {
 
             LibraryGUI gui = new LibraryGUI();
             gui.setVisible(true);
-
-            // 注册窗口关闭时的保存操作
-            gui.addWindowListener(new java.awt.event.WindowAdapter() {
-                @Override
-                public void windowClosing(java.awt.event.WindowEvent windowEvent) {
-                    gui.library.saveToFile();
-                }
-            });
         });
     }
 }
\ No newline at end of file
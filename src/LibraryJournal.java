@@ -0,0 +1,282 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+// 预写日志：每次修改追加一行 "序号,类型,字段..."，按组 fsync
+// 启动时重放快照之后的条目，保存快照后去掉快照已包含的条目
+// 条目直接编码进复用的缓冲区，借还条目不经过字符串拼接和格式化
+public class LibraryJournal implements Closeable {
+    private static final int GROUP_SIZE = 64;              // 累计多少条强制刷盘一次
+    private static final long SYNC_INTERVAL_MS = 200;      // 后台刷盘间隔
+    private static final int COMPACT_THRESHOLD = 10000;    // 超过多少条后合并为快照
+
+    private final Path path;
+    private FileChannel channel;
+    private ScheduledExecutorService syncer;
+    private ByteBuffer pending;  // 未刷盘的条目，刷盘后清空复用
+    private int pendingCount;
+    private int entryCount;
+    private long lastSeq;
+    private long validLength = -1;
+
+    public LibraryJournal(String file) {
+        this.path = Paths.get(file);
+        this.pending = ByteBuffer.allocate(8192);
+    }
+
+    // 读取序号大于 afterSeq 的完整条目，返回去掉序号后的字段
+    public List<String[]> readEntries(long afterSeq) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        lastSeq = afterSeq;
+        if (!Files.exists(path)) {
+            return entries;
+        }
+
+        byte[] data = Files.readAllBytes(path);
+        int start = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') continue;
+
+            String line = new String(data, start, i - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            int comma = line.indexOf(',');
+            if (comma <= 0) continue;
+
+            long seq = Long.parseLong(line.substring(0, comma));
+            entryCount++;
+            if (seq <= afterSeq) continue;
+
+            entries.add(line.substring(comma + 1).split(","));
+            lastSeq = seq;
+        }
+        // 末尾没有换行的是崩溃时写了一半的条目，打开时截掉
+        validLength = start;
+        return entries;
+    }
+
+    // 日志所在目录不存在时先创建（首次运行时数据目录还没有保存过）
+    public synchronized void open() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (validLength >= 0 && channel.size() > validLength) {
+            channel.truncate(validLength);
+        }
+        channel.position(channel.size());
+
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(this::syncQuietly, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // 字段已用逗号连接好的条目（图书、成员等）
+    public synchronized long append(String entry) throws IOException {
+        long seq = begin();
+        putText(entry);
+        return end(seq);
+    }
+
+    // BORROW,图书ID,成员ID,借阅日,应还日
+    public synchronized long appendBorrow(String bookId, int memberId, LocalDate borrowDate, LocalDate dueDate)
+            throws IOException {
+        long seq = begin();
+        putText("BORROW,");
+        putText(bookId);
+        putByte(',');
+        putNumber(memberId);
+        putByte(',');
+        putDate(borrowDate);
+        putByte(',');
+        putDate(dueDate);
+        return end(seq);
+    }
+
+    // RETURN,图书ID,成员ID
+    public synchronized long appendReturn(String bookId, int memberId) throws IOException {
+        long seq = begin();
+        putText("RETURN,");
+        putText(bookId);
+        putByte(',');
+        putNumber(memberId);
+        return end(seq);
+    }
+
+    public synchronized void sync() throws IOException {
+        if (pendingCount == 0 || channel == null) return;
+
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        channel.force(false);
+        pending.clear();
+        pendingCount = 0;
+    }
+
+    // 去掉序号不大于 throughSeq 的条目（快照已包含），保留快照之后追加的条目（序号继续递增）
+    // 剩余条目通过 AtomicFile 整体替换日志文件；期间 append 等待
+    public synchronized void compact(long throughSeq) throws IOException {
+        sync();
+        if (channel == null) return;
+
+        if (throughSeq >= lastSeq) {
+            channel.truncate(0);
+            channel.force(true);
+            entryCount = 0;
+            return;
+        }
+
+        byte[] data = Files.readAllBytes(path);
+        int start = 0;
+        int kept = 0;
+        while (start < data.length) {
+            int end = start;
+            while (data[end] != '\n') end++;
+            int comma = start;
+            while (data[comma] != ',') comma++;
+            if (Long.parseLong(new String(data, start, comma - start, StandardCharsets.US_ASCII)) > throughSeq) {
+                break; // 序号递增，之后的条目都要保留
+            }
+            start = end + 1;
+        }
+        for (int i = start; i < data.length; i++) {
+            if (data[i] == '\n') kept++;
+        }
+
+        // 先关闭再替换（Windows 上不能替换已打开的文件），失败时重新打开原文件
+        int from = start;
+        channel.close();
+        try {
+            AtomicFile.write(path, out -> {
+                ByteBuffer buffer = ByteBuffer.wrap(data, from, data.length - from);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            });
+            entryCount = kept;
+        } finally {
+            channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+
+    public synchronized boolean needsCompaction() {
+        return entryCount >= COMPACT_THRESHOLD;
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        if (channel != null) {
+            sync();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private long begin() {
+        long seq = ++lastSeq;
+        putNumber(seq);
+        putByte(',');
+        return seq;
+    }
+
+    private long end(long seq) throws IOException {
+        putByte('\n');
+        pendingCount++;
+        entryCount++;
+        if (pendingCount >= GROUP_SIZE) {
+            sync();
+        }
+        return seq;
+    }
+
+    private void putByte(char c) {
+        ensureCapacity(1);
+        pending.put((byte) c);
+    }
+
+    // ASCII 逐字节写入；含其他字符时整体按 UTF-8 编码
+    private void putText(String text) {
+        ensureCapacity(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                pending.position(pending.position() - i);
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(bytes.length);
+                pending.put(bytes);
+                return;
+            }
+            pending.put((byte) c);
+        }
+    }
+
+    private void putNumber(long value) {
+        ensureCapacity(20);
+        if (value < 0) {
+            pending.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            pending.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    // 与 LocalDate.toString 相同的 yyyy-MM-dd；四位数以外的年份不常见，直接用 toString
+    private void putDate(LocalDate date) {
+        int year = date.getYear();
+        if (year < 1000 || year > 9999) {
+            putText(date.toString());
+            return;
+        }
+        putNumber(year);
+        putByte('-');
+        putTwoDigits(date.getMonthValue());
+        putByte('-');
+        putTwoDigits(date.getDayOfMonth());
+    }
+
+    private void putTwoDigits(int value) {
+        ensureCapacity(2);
+        pending.put((byte) ('0' + value / 10));
+        pending.put((byte) ('0' + value % 10));
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    private synchronized void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            System.err.println("日志刷盘失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// Library 各操作的运行指标：借还结果计数、每种操作的延迟直方图
+// 未启用时 start() 不读时钟、record 立即返回，开销只有一次 volatile 读
+// 启动参数 -Dlibrary.metrics=true 时默认启用，也可以运行中通过 setEnabled 或 JMX 开关
+public class LibraryMetrics {
+
+    public enum Operation {
+        BORROW, RETURN, SEARCH, SORT, LOAD, SAVE
+    }
+
+    private static final LoanStatus[] BORROW_OUTCOMES = {
+            LoanStatus.SUCCESS, LoanStatus.MEMBER_NOT_FOUND, LoanStatus.BOOK_NOT_FOUND,
+            LoanStatus.NO_COPIES, LoanStatus.ALREADY_BORROWED
+    };
+    private static final LoanStatus[] RETURN_OUTCOMES = {
+            LoanStatus.SUCCESS, LoanStatus.MEMBER_NOT_FOUND, LoanStatus.BOOK_NOT_FOUND,
+            LoanStatus.NOT_BORROWED
+    };
+
+    private volatile boolean enabled;
+    private final LatencyHistogram[] latencies;
+    private final LongAdder[] borrowOutcomes;
+    private final LongAdder[] returnOutcomes;
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+
+    public LibraryMetrics(boolean enabled) {
+        this.enabled = enabled;
+        this.latencies = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        this.borrowOutcomes = newAdders(LoanStatus.values().length);
+        this.returnOutcomes = newAdders(LoanStatus.values().length);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // 操作开始时调用，把返回值传给 record；未启用时返回 0，之后的 record 不记录
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void record(Operation operation, long start) {
+        if (start != 0) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    public void recordBorrow(LoanStatus status, long start) {
+        if (start != 0) {
+            borrowOutcomes[status.ordinal()].increment();
+            record(Operation.BORROW, start);
+        }
+    }
+
+    public void recordReturn(LoanStatus status, long start) {
+        if (start != 0) {
+            returnOutcomes[status.ordinal()].increment();
+            record(Operation.RETURN, start);
+        }
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        for (LoanStatus status : BORROW_OUTCOMES) {
+            counters.put("borrow." + status, borrowOutcomes[status.ordinal()].sum());
+        }
+        for (LoanStatus status : RETURN_OUTCOMES) {
+            counters.put("return." + status, returnOutcomes[status.ordinal()].sum());
+        }
+
+        List<MetricsSnapshot.LatencyStats> stats = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            stats.add(latencies[operation.ordinal()].snapshot(operation.name()));
+        }
+        return new MetricsSnapshot(LocalDateTime.now(), counters, stats);
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : latencies) {
+            histogram.reset();
+        }
+        for (int i = 0; i < borrowOutcomes.length; i++) {
+            borrowOutcomes[i].reset();
+            returnOutcomes[i].reset();
+        }
+    }
+
+    public void addExporter(MetricsExporter exporter) throws Exception {
+        exporter.start(this);
+        exporters.add(exporter);
+    }
+
+    public void stopExporters() {
+        for (MetricsExporter exporter : exporters) {
+            exporter.stop();
+        }
+        exporters.clear();
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,17 @@
+import java.util.List;
+import java.util.Map;
+
+// 通过 JMX（如 jconsole）查看和控制运行指标
+public interface LibraryMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    Map<String, Long> getCounters();
+
+    List<MetricsSnapshot.LatencyStats> getLatencies();
+
+    String getTextDump();
+
+    void reset();
+}
@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Library 的异步服务层：加载、保存、搜索、统计在后台线程执行，界面线程只提交任务和显示结果
+// 除 submit 的 Work 外，所有方法和回调都在 EDT 上调用
+public class LibraryService {
+    private final Library library;
+    private final ExecutorService executor;
+    private final Consumer<Throwable> onError;
+    private LibraryTask<List<Book>> currentSearch;
+    private long searchGeneration;
+
+    public LibraryService(Library library, Consumer<Throwable> onError) {
+        this.library = library;
+        this.onError = onError;
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "library-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public <T> LibraryTask<T> submit(String name, LibraryTask.Work<T> work, Consumer<T> onSuccess) {
+        LibraryTask<T> task = new LibraryTask<>(name, work, onSuccess, onError);
+        executor.execute(task);
+        return task;
+    }
+
+    // 加载数据并开启日志模式；加载被取消时不开启日志，onLoaded 不会被调用
+    public LibraryTask<Void> load(Runnable onLoaded) {
+        return submit("加载数据", progress -> {
+            library.loadFromFile(progress);
+            if (!progress.isCancelled()) {
+                library.enableJournal();
+                library.startAutosaveIfConfigured();
+            }
+            return null;
+        }, ignored -> onLoaded.run());
+    }
+
+    // 保存失败时调用 onFailed（不经过通用的错误处理），onSaved 不会被调用
+    public LibraryTask<Void> save(Runnable onSaved, Consumer<Throwable> onFailed) {
+        LibraryTask<Void> task = new LibraryTask<>("保存数据", progress -> {
+            if (!library.saveToFile(progress)) {
+                throw new IOException("数据文件写入失败");
+            }
+            return null;
+        }, ignored -> onSaved.run(), onFailed);
+        executor.execute(task);
+        return task;
+    }
+
+    // 新的搜索会取消上一次搜索；上一次的结果即使已经算完也会被丢弃
+    public void search(String keyword, Consumer<List<Book>> onResults) {
+        cancelSearch();
+
+        long generation = searchGeneration;
+        currentSearch = submit("搜索", progress -> library.searchBooksByTitle(keyword), results -> {
+            if (generation == searchGeneration) {
+                currentSearch = null;
+                onResults.accept(results);
+            }
+        });
+    }
+
+    public void cancelSearch() {
+        if (currentSearch != null) {
+            currentSearch.cancel(false);
+            currentSearch = null;
+        }
+        searchGeneration++;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,29 @@
+import java.util.List;
+import java.util.Map;
+
+// 分区模式下的一个分片：保存一部分图书及其库存和借阅记录，以及全部成员的副本
+// Library 本身就是进程内的分片；RemoteLibraryShard 通过本机回环连接访问另一个进程中的分片
+public interface LibraryShard {
+    void addBook(Book book);
+
+    void addMember(Member member);
+
+    Book getBook(String id);
+
+    Member getMember(int id);
+
+    LoanResult borrowBook(int memberId, String bookId);
+
+    LoanResult returnBook(int memberId, String bookId);
+
+    List<Book> searchBooksByTitle(String keyword);
+
+    long getBookBorrowCount(String bookId);
+
+    int getMemberActiveLoanCount(int memberId);
+
+    // 成员ID -> 该分片上的当前借阅数
+    Map<Integer, Integer> getActiveLoanCounts();
+
+    void close();
+}
@@ -0,0 +1,194 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 在本机回环地址上提供一个 Library 分片，供 RemoteLibraryShard 访问；每个连接一个线程，请求逐行处理
+// 协议为文本行，字段格式与数据文件和日志相同：
+//   请求  BOOK,...（同数据文件）  MEMBER,id,name  BORROW,bookId,memberId  RETURN,bookId,memberId
+//         GET_BOOK,id  GET_MEMBER,id  SEARCH_TITLE,keyword  BORROW_COUNT,bookId
+//         ACTIVE_COUNT,memberId  ACTIVE_COUNTS
+//   响应  若干结果行，以 END 结束；出错时为一行 ERROR,message
+//   图书结果为数据文件的 BOOK 行后加可借数量，借还结果为状态名，之后是找到的成员和图书
+// 独立进程运行：java -Dlibrary.data.dir=data/shard-0 LibraryShardServer 9101
+public class LibraryShardServer implements Closeable {
+    static final String END = "END";
+    static final String ERROR = "ERROR";
+
+    private final Library library;
+    private final ServerSocket server;
+    private final ExecutorService workers;
+
+    // port 为 0 时使用系统分配的空闲端口
+    public LibraryShardServer(Library library, int port) throws IOException {
+        this.library = library;
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "library-shard");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public void start() {
+        workers.execute(this::acceptLoop);
+    }
+
+    // 停止接受请求并断开连接；Library 由调用者关闭
+    @Override
+    public void close() throws IOException {
+        server.close();
+        workers.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                workers.execute(() -> serve(socket));
+            } catch (SocketException e) {
+                return; // close() 关闭了监听
+            } catch (IOException e) {
+                System.err.println("接受分片连接失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            s.setTcpNoDelay(true);
+            String request;
+            while ((request = in.readLine()) != null) {
+                List<String> response;
+                try {
+                    response = handle(request);
+                    response.add(END);
+                } catch (RuntimeException e) {
+                    response = new ArrayList<>();
+                    response.add(ERROR + "," + errorMessage(e));
+                }
+                for (String line : response) {
+                    out.write(line);
+                    out.write('\n');
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 连接断开，客户端会重新连接
+        }
+    }
+
+    // 协议按行解析：错误信息必须是一行，换行替换为空格（逗号无妨，客户端只按第一个逗号切分）
+    private static String errorMessage(RuntimeException e) {
+        String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        return message.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private List<String> handle(String request) {
+        int comma = request.indexOf(',');
+        String command = comma < 0 ? request : request.substring(0, comma);
+        String argument = comma < 0 ? "" : request.substring(comma + 1);
+        String[] parts = request.split(",");
+        List<String> response = new ArrayList<>();
+
+        switch (command) {
+            case "BOOK":
+                Book book = Library.parseBook(parts);
+                if (book != null) {
+                    library.addBook(book);
+                }
+                break;
+            case "MEMBER":
+                library.addMember(Library.parseMember(parts));
+                break;
+            case "BORROW":
+                addLoanResult(response, library.borrowBook(Integer.parseInt(parts[2]), parts[1]));
+                break;
+            case "RETURN":
+                addLoanResult(response, library.returnBook(Integer.parseInt(parts[2]), parts[1]));
+                break;
+            case "GET_BOOK":
+                addBook(response, library.getBook(argument));
+                break;
+            case "GET_MEMBER":
+                addMember(response, library.getMember(Integer.parseInt(argument)));
+                break;
+            case "SEARCH_TITLE":
+                for (Book found : library.searchBooksByTitle(argument)) {
+                    addBook(response, found);
+                }
+                break;
+            case "BORROW_COUNT":
+                response.add(String.valueOf(library.getBookBorrowCount(argument)));
+                break;
+            case "ACTIVE_COUNT":
+                response.add(String.valueOf(library.getMemberActiveLoanCount(Integer.parseInt(argument))));
+                break;
+            case "ACTIVE_COUNTS":
+                for (Map.Entry<Integer, Integer> entry : library.getActiveLoanCounts().entrySet()) {
+                    response.add(entry.getKey() + "," + entry.getValue());
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("未知的分片请求: " + command);
+        }
+        return response;
+    }
+
+    private static void addLoanResult(List<String> response, LoanResult result) {
+        response.add(result.getStatus().name());
+        addMember(response, result.getMember());
+        addBook(response, result.getBook());
+    }
+
+    private static void addBook(List<String> response, Book book) {
+        String line = book == null ? null : Library.formatBook(book);
+        if (line != null) {
+            response.add(line + "," + book.getAvailableCopies());
+        }
+    }
+
+    private static void addMember(List<String> response, Member member) {
+        if (member != null) {
+            response.add(Library.formatMember(member));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("用法: java [-Dlibrary.data.dir=<目录>] LibraryShardServer <端口>");
+            System.exit(1);
+        }
+
+        Library library = new Library();
+        library.loadFromFile();
+        library.enableJournal();
+        library.startAutosaveIfConfigured();
+        LibraryShardServer server = new LibraryShardServer(library, Integer.parseInt(args[0]));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("关闭分片失败: " + e.getMessage());
+            }
+            library.saveToFile();
+            library.close();
+        }));
+        System.out.println("分片已启动，端口 " + server.getPort());
+        // 工作线程都是守护线程，主线程负责接受连接，进程一直运行到被终止
+        server.acceptLoop();
+    }
+}
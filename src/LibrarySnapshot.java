@@ -0,0 +1,77 @@
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+// Library 在某个时间点的只读一致视图，由 Library.snapshot() 在短暂暂停修改期间生成
+// 生成之后借还照常进行，报表和保存读取快照时不持有任何锁，也不会看到一半的修改
+// 图书、成员按加入顺序排列；图书的可借数量不在快照中（Book 对象会继续变化）
+public class LibrarySnapshot {
+    private final List<Book> books;
+    private final List<Member> members;
+    private final long[] borrowCounts; // 按图书 ordinal
+    private final Member mostActiveBorrower;
+    private final RecordStore store;
+    private final int recordCount;
+    private final List<BorrowRecord> records;
+    private final long journalSeq;
+
+    LibrarySnapshot(List<Book> books, List<Member> members, long[] borrowCounts, Member mostActiveBorrower,
+                    RecordStore store, int recordCount, long version, long journalSeq) {
+        this.books = Collections.unmodifiableList(books);
+        this.members = Collections.unmodifiableList(members);
+        this.borrowCounts = borrowCounts;
+        this.mostActiveBorrower = mostActiveBorrower;
+        this.store = store;
+        this.recordCount = recordCount;
+        this.records = store.getAll(recordCount, version, books::get);
+        this.journalSeq = journalSeq;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    public long getBookBorrowCount(Book book) {
+        int ordinal = book.getOrdinal();
+        return ordinal < borrowCounts.length ? borrowCounts[ordinal] : 0;
+    }
+
+    public Member getMostActiveBorrower() {
+        return mostActiveBorrower;
+    }
+
+    // 快照时的全部借阅记录，按借阅顺序；遍历时逐条创建记录对象
+    public List<BorrowRecord> getRecords() {
+        return records;
+    }
+
+    // 有借阅记录的月份（RecordStore.monthOf），可能包含快照之后才出现的月份，这些月份的记录为空
+    public int[] getMonths() {
+        return store.months();
+    }
+
+    // 快照时某月借出的记录
+    public List<BorrowRecord> getRecordsInMonth(int month) {
+        int[] rows = store.rowsInMonth(month, recordCount);
+        return new AbstractList<BorrowRecord>() {
+            @Override
+            public BorrowRecord get(int index) {
+                return records.get(rows[index]);
+            }
+
+            @Override
+            public int size() {
+                return rows.length;
+            }
+        };
+    }
+
+    // 快照已包含的最后一条日志序号
+    public long getJournalSeq() {
+        return journalSeq;
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+// 借阅统计：在每次借书/还书时增量更新，读取时无需遍历借阅记录
+// - 每本图书的累计借阅次数
+// - 每个成员当前未归还的借阅数
+// - 按当前借阅数排序的成员（用于查找最活跃借阅者）
+// 可被多个线程同时更新；同一成员的计数和排名在该成员的计数器上加锁，不同成员互不影响
+public class LibraryStatistics {
+    private final IntHashMap<LongAdder> borrowCountByBook; // 按图书 ordinal
+    private final IntHashMap<ActiveCounter> activeCountByMember;
+    // 当前借阅数降序，同数量时按成员ID升序
+    private final NavigableSet<Rank> ranking;
+
+    public LibraryStatistics() {
+        this.borrowCountByBook = new IntHashMap<>();
+        this.activeCountByMember = new IntHashMap<>();
+        this.ranking = new ConcurrentSkipListSet<>();
+    }
+
+    public void onBorrow(int bookOrdinal, int memberId) {
+        borrowCountByBook.computeIfAbsent(bookOrdinal, k -> new LongAdder()).increment();
+        changeActiveCount(memberId, 1);
+    }
+
+    public void onReturn(int memberId) {
+        changeActiveCount(memberId, -1);
+    }
+
+    // 用保存的借阅次数（按图书 ordinal）替换由已加载历史算出的次数：只加载部分历史时使用，加载期间调用
+    public void setBorrowCounts(long[] counts) {
+        borrowCountByBook.clear();
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            if (counts[ordinal] > 0) {
+                LongAdder count = new LongAdder();
+                count.add(counts[ordinal]);
+                borrowCountByBook.put(ordinal, count);
+            }
+        }
+    }
+
+    // 加载数据后根据借阅历史重建统计（加载期间没有其他线程修改）
+    // 借阅次数由存储对图书列做一次紧凑循环得到，当前借阅数来自当前借阅索引，不创建记录对象
+    public void rebuild(RecordStore records, int bookCount) {
+        activeCountByMember.clear();
+        ranking.clear();
+
+        setBorrowCounts(records.countByBook(bookCount));
+        records.forEachActiveMember(memberId -> changeActiveCount(memberId, 1));
+    }
+
+    public long getBookBorrowCount(int bookOrdinal) {
+        LongAdder count = borrowCountByBook.get(bookOrdinal);
+        return count == null ? 0 : count.sum();
+    }
+
+    public int getActiveCount(int memberId) {
+        ActiveCounter counter = activeCountByMember.get(memberId);
+        return counter == null ? 0 : Math.max(counter.count, 0);
+    }
+
+    // 所有有未归还借阅的成员的当前借阅数（成员ID -> 数量），一次遍历计数器得到
+    public Map<Integer, Integer> getActiveCounts() {
+        Map<Integer, Integer> counts = new HashMap<>();
+        activeCountByMember.forEach((memberId, counter) -> {
+            int count = counter.count;
+            if (count > 0) {
+                counts.put(memberId, count);
+            }
+        });
+        return counts;
+    }
+
+    // 返回当前借阅数最多的成员ID，没有未归还的借阅时返回 null
+    public Integer getMostActiveMemberId() {
+        Iterator<Rank> it = ranking.iterator();
+        return it.hasNext() ? it.next().memberId : null;
+    }
+
+    // 借还并发时计数可能暂时为负（还书先于借书的统计更新），增量可交换，最终结果一致
+    private void changeActiveCount(int memberId, int delta) {
+        ActiveCounter counter = activeCountByMember.computeIfAbsent(memberId, k -> new ActiveCounter());
+        synchronized (counter) {
+            if (counter.count > 0) {
+                ranking.remove(counter.rank);
+            }
+            counter.count += delta;
+            if (counter.count > 0) {
+                counter.rank = new Rank(counter.count, memberId);
+                ranking.add(counter.rank);
+            }
+        }
+    }
+
+    private static final class ActiveCounter {
+        private volatile int count;
+        private Rank rank;
+    }
+
+    private static final class Rank implements Comparable<Rank> {
+        private final int count;
+        private final int memberId;
+
+        Rank(int count, int memberId) {
+            this.count = count;
+            this.memberId = memberId;
+        }
+
+        @Override
+        public int compareTo(Rank other) {
+            if (count != other.count) {
+                return Integer.compare(other.count, count);
+            }
+            return Integer.compare(memberId, other.memberId);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import javax.swing.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+// 在后台线程执行 Library 操作的 SwingWorker
+// 进度通过 progress 属性（0~100）报告；结果和错误回调在 EDT 上执行，被取消的任务不回调
+public class LibraryTask<T> extends SwingWorker<T, Void> implements TaskProgress {
+
+    public interface Work<T> {
+        T run(TaskProgress progress) throws Exception;
+    }
+
+    private final String name;
+    private final Work<T> work;
+    private final Consumer<T> onSuccess;
+    private final Consumer<Throwable> onError;
+
+    public LibraryTask(String name, Work<T> work, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        this.name = name;
+        this.work = work;
+        this.onSuccess = onSuccess;
+        this.onError = onError;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    protected T doInBackground() throws Exception {
+        return work.run(this);
+    }
+
+    @Override
+    public void update(long done, long total) {
+        if (total > 0) {
+            setProgress((int) Math.min(100, done * 100 / total));
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) return;
+        try {
+            onSuccess.accept(get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            onError.accept(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+// 把借书/还书的结果和逾期提醒转换为显示给用户的消息，供 Main 和 LibraryGUI 使用
+// 图书的可借数量在生成消息时读取
+public class LoanMessages {
+    public static String borrowed(LoanResult result) {
+        Member member = result.getMember();
+        Book book = result.getBook();
+        switch (result.getStatus()) {
+            case SUCCESS:
+                return String.format("Success! Member \"%s\" borrowed \"%s\". Remaining copies: %d/%d",
+                        member.getName(), book.getTitle(), book.getAvailableCopies(), book.getTotalCopies());
+            case NO_COPIES:
+                return String.format("Failed: No available copies of \"%s\". (Available:%d/%d)",
+                        book.getTitle(), book.getAvailableCopies(), book.getTotalCopies());
+            case ALREADY_BORROWED:
+                return String.format("Failed: Member \"%s\" already borrowed \"%s\" and hasn't returned it.",
+                        member.getName(), book.getTitle());
+            default:
+                return lookupFailed(result);
+        }
+    }
+
+    public static String returned(LoanResult result) {
+        Member member = result.getMember();
+        Book book = result.getBook();
+        switch (result.getStatus()) {
+            case SUCCESS:
+                return String.format("Success! Member \"%s\" returned \"%s\". Available copies: %d/%d",
+                        member.getName(), book.getTitle(), book.getAvailableCopies(), book.getTotalCopies());
+            case NOT_BORROWED:
+                return String.format("Failed: Member \"%s\" has no active borrow record for book %s.",
+                        member.getName(), book.getId());
+            default:
+                return lookupFailed(result);
+        }
+    }
+
+    // 逾期提醒，member 为 null 时只显示成员ID
+    public static String overdue(BorrowRecord record, Member member) {
+        String who = member != null ? member.getName() : String.valueOf(record.getMemberId());
+        return String.format("Overdue: Member \"%s\" has not returned \"%s\" (%s), due %s.",
+                who, record.getBook().getTitle(), record.getBook().getId(), record.getDueDate());
+    }
+
+    // 定时检查发现逾期借阅时的提醒
+    public static String overdueReminder(int count) {
+        return String.format("Reminder: %d loan(s) are overdue.", count);
+    }
+
+    private static String lookupFailed(LoanResult result) {
+        if (result.getStatus() == LoanStatus.MEMBER_NOT_FOUND) {
+            return String.format("Error: Member with ID %d does not exist.", result.getMemberId());
+        }
+        return String.format("Error: Book with ID %s not found.", result.getBookId());
+    }
+}
@@ -0,0 +1,18 @@
+// 批量借还中的一项：成员ID和图书ID
+public class LoanRequest {
+    private final int memberId;
+    private final String bookId;
+
+    public LoanRequest(int memberId, String bookId) {
+        this.memberId = memberId;
+        this.bookId = bookId;
+    }
+
+    public int getMemberId() {
+        return memberId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+}
@@ -0,0 +1,40 @@
+// 一次借书/还书的结果：状态、请求的ID，以及找到的成员和图书（不存在时为 null）
+public class LoanResult {
+    private final LoanStatus status;
+    private final int memberId;
+    private final String bookId;
+    private final Member member;
+    private final Book book;
+
+    LoanResult(LoanStatus status, int memberId, String bookId, Member member, Book book) {
+        this.status = status;
+        this.memberId = memberId;
+        this.bookId = bookId;
+        this.member = member;
+        this.book = book;
+    }
+
+    public LoanStatus getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == LoanStatus.SUCCESS;
+    }
+
+    public int getMemberId() {
+        return memberId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public Member getMember() {
+        return member;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+}
@@ -0,0 +1,9 @@
+// 借书/还书的结果
+public enum LoanStatus {
+    SUCCESS,
+    MEMBER_NOT_FOUND,
+    BOOK_NOT_FOUND,
+    NO_COPIES,        // 借书：没有可借副本
+    ALREADY_BORROWED, // 借书：该成员已借此书且未归还
+    NOT_BORROWED      // 还书：该成员没有此书的未归还记录
+}
@@ -1,12 +1,36 @@
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     private static Library library = new Library();
     private static Scanner scanner = new Scanner(System.in);
+    private static OverdueNotifier overdueNotifier;
 
     public static void main(String[] args) {
         // 初始化示例数据
         library.loadFromFile();
+        library.enableJournal();
+        library.startAutosaveIfConfigured();
+
+        // 启动后立即检查一次逾期借阅，之后每小时一次：按批输出提醒，最后输出总数
+        overdueNotifier = new OverdueNotifier(library, OverdueNotifier.DEFAULT_BATCH_SIZE, batch -> {
+            for (BorrowRecord record : batch) {
+                System.out.println(LoanMessages.overdue(record, library.getMember(record.getMemberId())));
+            }
+        }, total -> {
+            if (total > 0) {
+                System.out.println(LoanMessages.overdueReminder(total));
+            }
+        });
+        overdueNotifier.start(1, TimeUnit.HOURS);
+
+        // 运行指标注册到 JMX，可在 jconsole 中查看或开关
+        try {
+            library.getMetrics().addExporter(new JmxMetricsExporter());
+        } catch (Exception e) {
+            System.err.println("注册指标 MBean 失败: " + e.getMessage());
+        }
 
         while (true) {
             showMenu();
@@ -24,8 +48,11 @@ public class Main {
                 case "9": listBooksSortedByTitle(); break;
                 case "10": listBooksSortedByAuthor(); break;
                 case "11": showStatistics(); break;
+                case "12": showOverdue(); break;
                 case "0": exit();
+                overdueNotifier.stop();
                 library.saveToFile();
+                library.close();
                 return;
                 default: System.out.println("Invalid option. Please try again.");
             }
@@ -60,6 +87,7 @@ public class Main {
         System.out.println("9) 按标题排序列出图书");
         System.out.println("10) 按作者排序列出图书");
         System.out.println("11) 统计信息");
+        System.out.println("12) 逾期未还的借阅");
         System.out.println("0) 退出");
         System.out.print(">");
     }
@@ -186,8 +214,8 @@ public class Main {
         System.out.print("Enter book ID: ");
         String bookId = scanner.nextLine().trim().toUpperCase();
 
-        String result = library.borrowBook(memberId, bookId);
-        System.out.println(result);
+        LoanResult result = library.borrowBook(memberId, bookId);
+        System.out.println(LoanMessages.borrowed(result));
     }
 
     private static void returnBook() {
@@ -197,8 +225,8 @@ public class Main {
         System.out.print("Enter book ID: ");
         String bookId = scanner.nextLine().trim().toUpperCase();
 
-        String result = library.returnBook(memberId, bookId);
-        System.out.println(result);
+        LoanResult result = library.returnBook(memberId, bookId);
+        System.out.println(LoanMessages.returned(result));
     }
 
     private static void showMemberBooks() {
@@ -241,19 +269,25 @@ public class Main {
 
     private static void showStatistics() {
         System.out.println("\n--- Statistics ---");
+        LibrarySnapshot snapshot = library.snapshot();
 
         // 最活跃借阅者
-        Member mostActive = library.findMostActiveBorrower();
+        Member mostActive = snapshot.getMostActiveBorrower();
         if (mostActive != null) {
             System.out.println("Most active borrower: " + mostActive.getName());
         }
 
         // 图书借阅次数
         System.out.println("\nBook borrow counts:");
-        for (Book book : library.listBooks()) {
-            long count = library.getBookBorrowCount(book.getId());
+        for (Book book : snapshot.getBooks()) {
+            long count = snapshot.getBookBorrowCount(book);
             System.out.printf("%s: %d times borrowed\n", book.getTitle(), count);
         }
+
+        if (library.getMetrics().isEnabled()) {
+            System.out.println();
+            System.out.print(library.getMetrics().snapshot().toText());
+        }
     }
 
     private static void pressEnterToContinue() {
@@ -261,6 +295,15 @@ public class Main {
         scanner.nextLine();
     }
 
+    private static void showOverdue() {
+        System.out.println("\n--- Overdue Loans ---");
+        List<BorrowRecord> overdue = library.findOverdue(LocalDate.now());
+        for (BorrowRecord record : overdue) {
+            System.out.println(LoanMessages.overdue(record, library.getMember(record.getMemberId())));
+        }
+        System.out.println("Total overdue: " + overdue.size());
+    }
+
     private static void exit() {
         System.out.println("Exiting Library Management System... \nGoodbye!");
     }
@@ -0,0 +1,152 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// 堆外的借阅历史：记录保存在内存映射文件中，每条记录占固定宽度的槽位，历史增长不增加堆占用和 GC 压力
+// 映射文件只是堆外的暂存区，不用于重启恢复：每次启动新建并由加载数据文件重新写入，关闭时删除
+// 文件结构：8 字节文件头（魔数、槽位大小），之后是连续的槽位
+// 槽位：图书 ordinal、成员ID、借阅日、应还日各 4 字节，归还版本 8 字节（文件头 8 字节，归还版本按 8 字节对齐）
+// 文件按 region 分段映射（单个映射不能超过 2GB），追加时移动尾指针并在需要时映射下一段；读取直接访问映射内存
+// 追加加锁（移动尾指针、映射新段），size 在整条记录写完后才增加，读者无需加锁
+public class MappedRecordStorage implements RecordStorage, Closeable {
+    private static final int MAGIC = 0x4C425253; // "LBRS"
+    private static final int HEADER_SIZE = 8;
+
+    private static final int SLOT_SIZE = 24;
+    private static final int BOOK = 0;
+    private static final int MEMBER = 4;
+    private static final int BORROW_DAY = 8;
+    private static final int DUE_DAY = 12;
+    private static final int RETURNED_VERSION = 16;
+
+    // 每段 2^22 条记录，约 100MB
+    private static final int REGION_BITS = 22;
+    private static final int REGION_ROWS = 1 << REGION_BITS;
+    private static final int REGION_MASK = REGION_ROWS - 1;
+    private static final long REGION_BYTES = (long) REGION_ROWS * SLOT_SIZE;
+
+    // 归还版本由归还线程设置、其他线程读取，用 release/acquire 访问；字节序必须与缓冲区（本机字节序）一致
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private volatile int size;
+
+    private MappedRecordStorage(Path file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.header = map(channel, 0, HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(4, SLOT_SIZE);
+    }
+
+    // 创建（或清空已有的）映射文件；历史以数据文件为准，加载时重新写入
+    // 同一个文件同时只能由一个实例使用
+    public static MappedRecordStorage create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new MappedRecordStorage(file, channel);
+    }
+
+    @Override
+    public synchronized int append(int bookOrdinal, int memberId, int borrowDay, int dueDay, long returnedVersion) {
+        int row = size;
+        int index = row >>> REGION_BITS;
+        MappedByteBuffer[] current = regions;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, index + 1);
+            try {
+                current[index] = map(channel, HEADER_SIZE + index * REGION_BYTES, REGION_BYTES);
+            } catch (IOException e) {
+                throw new IllegalStateException("映射借阅记录文件失败: " + e.getMessage(), e);
+            }
+            regions = current;
+        }
+
+        MappedByteBuffer region = current[index];
+        int offset = (row & REGION_MASK) * SLOT_SIZE;
+        region.putInt(offset + BOOK, bookOrdinal);
+        region.putInt(offset + MEMBER, memberId);
+        region.putInt(offset + BORROW_DAY, borrowDay);
+        region.putInt(offset + DUE_DAY, dueDay);
+        region.putLong(offset + RETURNED_VERSION, returnedVersion);
+        size = row + 1;
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int bookOrdinal(int row) {
+        return read(row, BOOK);
+    }
+
+    @Override
+    public int memberId(int row) {
+        return read(row, MEMBER);
+    }
+
+    @Override
+    public int borrowDay(int row) {
+        return read(row, BORROW_DAY);
+    }
+
+    @Override
+    public int dueDay(int row) {
+        return read(row, DUE_DAY);
+    }
+
+    @Override
+    public long returnedVersion(int row) {
+        return (long) LONGS.getAcquire(regions[row >>> REGION_BITS], (row & REGION_MASK) * SLOT_SIZE + RETURNED_VERSION);
+    }
+
+    @Override
+    public void setReturnedVersion(int row, long version) {
+        LONGS.setRelease(regions[row >>> REGION_BITS], (row & REGION_MASK) * SLOT_SIZE + RETURNED_VERSION, version);
+    }
+
+    // 逐段按槽位步长读取图书列，不创建记录对象
+    @Override
+    public void countByBook(int rows, long[] counts) {
+        MappedByteBuffer[] current = regions;
+        for (int start = 0; start < rows; start += REGION_ROWS) {
+            MappedByteBuffer region = current[start >>> REGION_BITS];
+            int end = Math.min(REGION_ROWS, rows - start) * SLOT_SIZE;
+            for (int offset = BOOK; offset < end; offset += SLOT_SIZE) {
+                counts[region.getInt(offset)]++;
+            }
+        }
+    }
+
+    // 把已写入的记录刷到磁盘并关闭文件；映射内存在缓冲区被回收时释放
+    @Override
+    // 关闭通道并删除文件（内容不需要保留，不刷盘）；已映射的内存在缓冲区被回收前仍可读
+    public synchronized void close() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    private int read(int row, int field) {
+        return regions[row >>> REGION_BITS].getInt((row & REGION_MASK) * SLOT_SIZE + field);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+}
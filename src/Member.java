@@ -1,6 +1,7 @@
 public class Member {
     private int id;
     private String name;
+    private int ordinal = -1; // 在所属 Library 中按加入顺序的序号
 
     public Member(int id, String name) {
         this.id = id;
@@ -15,6 +16,14 @@ public class Member {
         return name;
     }
 
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
     @Override
     public String toString() {
         return String.format("ID:%d Name:%s", id, name);
@@ -0,0 +1,64 @@
+import javax.swing.table.AbstractTableModel;
+
+// 成员表格模型：按加入顺序从 Library 按需读取行
+public class MemberTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"ID", "姓名", "当前借阅数"};
+
+    private final Library library;
+    private int rowCount;
+
+    public MemberTableModel(Library library) {
+        this.library = library;
+    }
+
+    public void refresh() {
+        rowCount = library.getMemberCount();
+        fireTableDataChanged();
+    }
+
+    public Member getMemberAt(int row) {
+        return library.getMemberAt(row);
+    }
+
+    // 借还后只刷新该成员所在行
+    public void memberChanged(Member member) {
+        if (member == null) return;
+
+        int row = member.getOrdinal();
+        if (row >= 0 && row < rowCount) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Member member = library.getMemberAt(row);
+        switch (column) {
+            case 0:
+                return member.getId();
+            case 1:
+                return member.getName();
+            case 2:
+                return library.getMemberActiveLoanCount(member.getId());
+            default:
+                return null;
+        }
+    }
+}
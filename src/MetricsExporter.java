@@ -0,0 +1,6 @@
+// 指标导出方式：start 时开始导出（定时写出、注册到 JMX 等），stop 时停止
+public interface MetricsExporter {
+    void start(LibraryMetrics metrics) throws Exception;
+
+    void stop();
+}
@@ -0,0 +1,99 @@
+import java.time.LocalDateTime;
+import java.util.*;
+
+// 某一时刻的指标快照：计数器和各操作的延迟分布，不可修改
+public class MetricsSnapshot {
+    private final LocalDateTime time;
+    private final Map<String, Long> counters;
+    private final List<LatencyStats> latencies;
+
+    public MetricsSnapshot(LocalDateTime time, Map<String, Long> counters, List<LatencyStats> latencies) {
+        this.time = time;
+        this.counters = Collections.unmodifiableMap(new LinkedHashMap<>(counters));
+        this.latencies = Collections.unmodifiableList(new ArrayList<>(latencies));
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    // 计数器名 -> 次数，如 borrow.SUCCESS、borrow.NO_COPIES、return.NOT_BORROWED
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public List<LatencyStats> getLatencies() {
+        return latencies;
+    }
+
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("===== 运行指标 (").append(time.withNano(0)).append(") =====\n");
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            sb.append(String.format("%-26s %d\n", counter.getKey(), counter.getValue()));
+        }
+        sb.append(String.format("\n%-8s %10s %10s %10s %10s %10s %10s %10s\n",
+                "操作", "次数", "平均(us)", "p50", "p90", "p99", "p99.9", "最大"));
+        for (LatencyStats stats : latencies) {
+            sb.append(String.format("%-8s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f\n",
+                    stats.getOperation(), stats.getCount(), stats.getMeanMicros(), stats.getP50Micros(),
+                    stats.getP90Micros(), stats.getP99Micros(), stats.getP999Micros(), stats.getMaxMicros()));
+        }
+        return sb.toString();
+    }
+
+    // 一种操作的延迟分布，内部以纳秒保存，对外以微秒报告
+    public static class LatencyStats {
+        private final String operation;
+        private final long count;
+        private final long mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        public LatencyStats(String operation, long count, long mean, long p50, long p90, long p99, long p999, long max) {
+            this.operation = operation;
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMicros() {
+            return mean / 1000.0;
+        }
+
+        public double getP50Micros() {
+            return p50 / 1000.0;
+        }
+
+        public double getP90Micros() {
+            return p90 / 1000.0;
+        }
+
+        public double getP99Micros() {
+            return p99 / 1000.0;
+        }
+
+        public double getP999Micros() {
+            return p999 / 1000.0;
+        }
+
+        public double getMaxMicros() {
+            return max / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 修改操作与快照之间的闸门，代替读写锁：
+// - 修改操作 enter/exit 之间彼此并发，只增减本线程所在分段的计数（各分段在不同缓存行），不争用同一个锁字
+// - pause 关闭闸门并等待各分段计数归零，之后新的修改操作在 enter 中等待，直到 resume
+// pause 可由同一线程嵌套调用；修改操作不能嵌套 enter，也不能在 enter 之后调用 pause
+public class MutationGate {
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2;
+    private static final int PADDING = 16; // 每个分段占 128 字节
+
+    private final AtomicLongArray active = new AtomicLongArray(STRIPES * PADDING);
+    private final ReentrantLock pauseLock = new ReentrantLock();
+    private volatile boolean paused;
+
+    public void enter() {
+        int slot = slot();
+        while (true) {
+            // 先登记再检查闸门；pause 先关闸门再检查登记，两边至少有一方看到对方
+            active.incrementAndGet(slot);
+            if (!paused) return;
+
+            active.decrementAndGet(slot);
+            awaitResume();
+        }
+    }
+
+    public void exit() {
+        active.decrementAndGet(slot());
+    }
+
+    public void pause() {
+        pauseLock.lock();
+        if (pauseLock.getHoldCount() > 1) return;
+
+        paused = true;
+        for (int slot = 0; slot < active.length(); slot += PADDING) {
+            while (active.get(slot) != 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    public void resume() {
+        if (pauseLock.getHoldCount() == 1) {
+            synchronized (this) {
+                paused = false;
+                notifyAll();
+            }
+        }
+        pauseLock.unlock();
+    }
+
+    // 与锁一样不响应中断，等待期间被中断时在返回前恢复中断状态
+    private synchronized void awaitResume() {
+        boolean interrupted = false;
+        while (paused) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int slot() {
+        return (System.identityHashCode(Thread.currentThread()) & (STRIPES - 1)) * PADDING;
+    }
+}
@@ -0,0 +1,68 @@
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// 定时查询逾期借阅，按批交给处理者（发送提醒、写日志等）
+// 每次查询走 Library 的应还日索引，只读取逾期的记录，不扫描已归还的历史；边读边分批，不生成完整的逾期列表
+public class OverdueNotifier {
+    // 每批的记录数，前端未指定时使用
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final Library library;
+    private final int batchSize;
+    private final Consumer<List<BorrowRecord>> handler;
+    private final IntConsumer onScanned;
+    private ScheduledExecutorService scheduler;
+
+    public OverdueNotifier(Library library, int batchSize, Consumer<List<BorrowRecord>> handler) {
+        this(library, batchSize, handler, total -> { });
+    }
+
+    // onScanned 在每次定时查询结束后收到逾期总数（包括 0），可用于显示汇总
+    public OverdueNotifier(Library library, int batchSize, Consumer<List<BorrowRecord>> handler,
+                           IntConsumer onScanned) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.library = library;
+        this.batchSize = batchSize;
+        this.handler = handler;
+        this.onScanned = onScanned;
+    }
+
+    // 立即查询一次，之后每隔 period 查询一次
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-overdue");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::runScan, 0, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    // 查询截至 asOf 的逾期借阅并分批通知，返回逾期数量
+    public int notifyOverdue(LocalDate asOf) {
+        return library.forEachOverdue(asOf, batchSize, handler);
+    }
+
+    private void runScan() {
+        // 处理者抛出异常不能终止定时任务
+        try {
+            onScanned.accept(notifyOverdue(LocalDate.now()));
+        } catch (RuntimeException e) {
+            System.err.println("发送逾期提醒失败: " + e.getMessage());
+        }
+    }
+}
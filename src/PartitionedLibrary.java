@@ -0,0 +1,161 @@
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+// 分区模式：图书及其库存、借阅记录按图书ID的一致性哈希分布在多个分片上，成员复制到每个分片
+// - 添加图书、借书、还书、按ID查图书和借阅次数路由到图书所在的分片（成员检查也在该分片完成）
+// - 添加成员写入所有分片
+// - 标题搜索和成员借阅统计并行发往所有分片再合并（scatter-gather）
+// 路由本身不保存数据；分片可以是进程内的 Library，也可以是其他进程中的 LibraryShardServer
+public class PartitionedLibrary {
+    private final List<LibraryShard> shards;
+    private final ConsistentHashRing ring;
+    private final ExecutorService scatter;
+
+    public PartitionedLibrary(List<? extends LibraryShard> shards) {
+        this.shards = new ArrayList<>(shards);
+        this.ring = new ConsistentHashRing(shards.size());
+        this.scatter = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread t = new Thread(r, "library-scatter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // 进程内的 shardCount 个分片；与分片进程一样各用自己的数据目录（数据目录下的 shard-<下标>），
+    // 保存、日志不会写到同一组文件
+    public static PartitionedLibrary local(int shardCount) {
+        Path dir = ShardedDataStore.resolveDir();
+        List<Library> libraries = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            libraries.add(new Library(dir.resolve("shard-" + i)));
+        }
+        return new PartitionedLibrary(libraries);
+    }
+
+    // 连接本机上各端口的分片进程；端口顺序决定分片下标，各次启动必须一致，否则图书会被路由到别的分片
+    public static PartitionedLibrary connect(int... ports) {
+        List<LibraryShard> remotes = new ArrayList<>();
+        for (int port : ports) {
+            remotes.add(new RemoteLibraryShard(port));
+        }
+        return new PartitionedLibrary(remotes);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public LibraryShard shardFor(String bookId) {
+        return shards.get(ring.shardFor(bookId));
+    }
+
+    public void addBook(Book book) {
+        shardFor(book.getId()).addBook(book);
+    }
+
+    public void addMember(Member member) {
+        scatterGather(shard -> {
+            shard.addMember(member);
+            return null;
+        });
+    }
+
+    public Book getBook(String id) {
+        return shardFor(id).getBook(id);
+    }
+
+    // 成员在每个分片上都有副本，取第一个分片
+    public Member getMember(int id) {
+        return shards.get(0).getMember(id);
+    }
+
+    public LoanResult borrowBook(int memberId, String bookId) {
+        return shardFor(bookId).borrowBook(memberId, bookId);
+    }
+
+    public LoanResult returnBook(int memberId, String bookId) {
+        return shardFor(bookId).returnBook(memberId, bookId);
+    }
+
+    // 各分片的结果按分片顺序拼接
+    public List<Book> searchBooksByTitle(String keyword) {
+        List<Book> results = new ArrayList<>();
+        for (List<Book> part : scatterGather(shard -> shard.searchBooksByTitle(keyword))) {
+            results.addAll(part);
+        }
+        return results;
+    }
+
+    public long getBookBorrowCount(String bookId) {
+        return shardFor(bookId).getBookBorrowCount(bookId);
+    }
+
+    // 成员在各分片上的借阅分属不同图书，总数为各分片之和
+    public int getMemberActiveLoanCount(int memberId) {
+        int total = 0;
+        for (int count : scatterGather(shard -> shard.getMemberActiveLoanCount(memberId))) {
+            total += count;
+        }
+        return total;
+    }
+
+    public Map<Integer, Integer> getActiveLoanCounts() {
+        Map<Integer, Integer> totals = new HashMap<>();
+        for (Map<Integer, Integer> part : scatterGather(LibraryShard::getActiveLoanCounts)) {
+            part.forEach((memberId, count) -> totals.merge(memberId, count, Integer::sum));
+        }
+        return totals;
+    }
+
+    // 与 Library 相同：当前借阅数最多的成员，数量相同时取ID最小的；没有借阅时返回 null
+    public Member findMostActiveBorrower() {
+        Integer best = null;
+        int bestCount = 0;
+        for (Map.Entry<Integer, Integer> entry : getActiveLoanCounts().entrySet()) {
+            int count = entry.getValue();
+            if (count > bestCount || (count == bestCount && count > 0 && entry.getKey() < best)) {
+                best = entry.getKey();
+                bestCount = count;
+            }
+        }
+        return best == null ? null : getMember(best);
+    }
+
+    // 关闭各分片（进程内的 Library 或到远程分片的连接）
+    public void close() {
+        scatter.shutdown();
+        for (LibraryShard shard : shards) {
+            shard.close();
+        }
+    }
+
+    // 对每个分片并行执行 action，结果按分片顺序返回；任一分片失败时抛出它的异常
+    private <T> List<T> scatterGather(Function<LibraryShard, T> action) {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (LibraryShard shard : shards) {
+            futures.add(scatter.submit(() -> action.apply(shard)));
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("分片请求被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+}
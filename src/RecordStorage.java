@@ -0,0 +1,24 @@
+// 借阅历史的底层存储：每条记录是一行，按追加顺序编号（行号从 0 开始），归还版本为 long，其余各列都是 int
+// 图书以 ordinal 表示，日期以 epoch day 表示；归还版本为 0 表示未归还，否则是归还时的版本号（见 RecordStore）
+// 记录追加后只有归还版本可以修改，且只能从 0 设置一次
+// 实现必须允许多个线程同时读取，同时追加和设置归还版本
+public interface RecordStorage {
+    int append(int bookOrdinal, int memberId, int borrowDay, int dueDay, long returnedVersion);
+
+    int size();
+
+    int bookOrdinal(int row);
+
+    int memberId(int row);
+
+    int borrowDay(int row);
+
+    int dueDay(int row);
+
+    long returnedVersion(int row);
+
+    void setReturnedVersion(int row, long version);
+
+    // 统计前 rows 行中每本图书（按 ordinal）的借阅次数，累加到 counts
+    void countByBook(int rows, long[] counts);
+}
@@ -0,0 +1,286 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+// 借阅记录存储：完整借阅历史保存在 RecordStorage 中（每条记录一行），并维护以下索引
+// - 当前借阅：按 (成员ID, 图书 ordinal) 定位未归还记录的行号
+// - 按成员的借阅历史行号
+// - 当前借阅按应还日排序的索引，查询逾期借阅时只访问逾期的记录
+// - 按借阅月份的行号（数据目录按月分片保存），以及上次保存之后有变化的月份
+// BorrowRecord 只在读取时按行创建，不长期保存
+// 每次归还把记录标记为新的版本号；快照只需记下当时的行数和版本号，之后的追加和归还对它不可见
+// 可被多个线程同时调用：占用/释放借阅组合是原子操作
+public class RecordStore {
+    // 已占用但尚未写入历史的借阅（库存检查之前）
+    private static final int PENDING = -1;
+    // 加载时已归还的记录的版本号；归还版本 0 表示未归还
+    private static final long LOADED_VERSION = 1;
+
+    private final RecordStorage storage;
+    private final IntFunction<Book> booksByOrdinal;
+    private final Map<LoanKey, Integer> activeLoans;
+    private final IntHashMap<IntList> rowsByMember;
+    // 元素为 (应还日 << 32) | 行号，按应还日、再按借阅顺序排列；只包含当前借阅
+    private final ConcurrentSkipListSet<Long> activeByDueDay;
+    // 每次归还加一，长期运行时会超过 int 范围，用 long 避免回绕后快照的版本比较出错
+    private final AtomicLong version = new AtomicLong(LOADED_VERSION);
+    // 月份键为 年 * 12 + 月 - 1
+    private final IntHashMap<IntList> rowsByMonth;
+    private final Set<Integer> dirtyMonths;
+
+    public RecordStore(IntFunction<Book> booksByOrdinal) {
+        this(new ColumnarRecordStorage(), booksByOrdinal);
+    }
+
+    public RecordStore(RecordStorage storage, IntFunction<Book> booksByOrdinal) {
+        this.storage = storage;
+        this.booksByOrdinal = booksByOrdinal;
+        this.activeLoans = new ConcurrentHashMap<>();
+        this.rowsByMember = new IntHashMap<>();
+        this.activeByDueDay = new ConcurrentSkipListSet<>();
+        this.rowsByMonth = new IntHashMap<>();
+        this.dirtyMonths = ConcurrentHashMap.newKeySet();
+    }
+
+    public static int monthOf(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    // 加载时使用：追加历史，未归还的同时登记为当前借阅
+    public void add(Book book, int memberId, LocalDate borrowDate, LocalDate dueDate, boolean returned) {
+        int row = append(book, memberId, borrowDate, dueDate, returned);
+        if (!returned) {
+            // 与原来的 findFirst 语义一致：同一组合保留最早的未归还记录
+            if (activeLoans.putIfAbsent(new LoanKey(memberId, book.getOrdinal()), row) == null) {
+                activeByDueDay.add(dueKey(row));
+            }
+        }
+    }
+
+    // 原子地占用 (成员, 图书) 组合；已有未归还记录时返回 false
+    public boolean beginLoan(int memberId, Book book) {
+        return activeLoans.putIfAbsent(new LoanKey(memberId, book.getOrdinal()), PENDING) == null;
+    }
+
+    // 撤销 beginLoan（例如库存已被其他线程借完）
+    public void cancelLoan(int memberId, Book book) {
+        activeLoans.remove(new LoanKey(memberId, book.getOrdinal()), PENDING);
+    }
+
+    // beginLoan 成功且库存已扣减后，写入历史并登记行号
+    public void commitLoan(Book book, int memberId, LocalDate borrowDate, LocalDate dueDate) {
+        int row = append(book, memberId, borrowDate, dueDate, false);
+        dirtyMonths.add(monthOf(borrowDate));
+        activeByDueDay.add(dueKey(row));
+        activeLoans.replace(new LoanKey(memberId, book.getOrdinal()), PENDING, row);
+    }
+
+    // 原子地结束借阅；没有未归还记录（或已被其他线程归还）时返回 false
+    public boolean endLoan(int memberId, Book book) {
+        LoanKey key = new LoanKey(memberId, book.getOrdinal());
+        Integer row = activeLoans.get(key);
+        if (row == null || row == PENDING || !activeLoans.remove(key, row)) {
+            return false;
+        }
+        storage.setReturnedVersion(row, version.incrementAndGet());
+        dirtyMonths.add(monthOf(LocalDate.ofEpochDay(storage.borrowDay(row))));
+        activeByDueDay.remove(dueKey(row));
+        return true;
+    }
+
+    public boolean hasActive(int memberId, Book book) {
+        return activeLoans.containsKey(new LoanKey(memberId, book.getOrdinal()));
+    }
+
+    // 成员的全部借阅历史，按借阅顺序
+    public List<BorrowRecord> getMemberRecords(int memberId) {
+        IntList rows = rowsByMember.get(memberId);
+        if (rows == null) return Collections.emptyList();
+
+        List<BorrowRecord> result = new ArrayList<>(rows.size());
+        for (int row : rows.toArray()) {
+            result.add(record(row));
+        }
+        return result;
+    }
+
+    // 成员当前未归还的借阅，只为这些行创建记录对象
+    public List<BorrowRecord> getActiveRecords(int memberId) {
+        IntList rows = rowsByMember.get(memberId);
+        if (rows == null) return Collections.emptyList();
+
+        List<BorrowRecord> result = new ArrayList<>();
+        for (int row : rows.toArray()) {
+            if (storage.returnedVersion(row) == 0) {
+                result.add(record(row));
+            }
+        }
+        return result;
+    }
+
+    // 有记录的全部月份
+    public int[] months() {
+        IntList months = new IntList();
+        rowsByMonth.forEach((month, rows) -> months.add(month));
+        return months.toArray();
+    }
+
+    // 某月借出的记录中行号小于 rows 的部分（并发追加时顺序可能与行号略有出入）
+    public int[] rowsInMonth(int month, int rows) {
+        IntList list = rowsByMonth.get(month);
+        if (list == null) return new int[0];
+
+        int[] all = list.toArray();
+        int n = 0;
+        for (int row : all) {
+            if (row < rows) {
+                all[n++] = row;
+            }
+        }
+        return n == all.length ? all : Arrays.copyOf(all, n);
+    }
+
+    // 取出并清空上次调用以来有借出或归还的月份；保存失败时用 markDirty 放回
+    public Set<Integer> drainDirtyMonths() {
+        Set<Integer> drained = new HashSet<>();
+        for (Iterator<Integer> it = dirtyMonths.iterator(); it.hasNext(); ) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+
+    public void markDirty(Collection<Integer> months) {
+        dirtyMonths.addAll(months);
+    }
+
+    // 最近一次归还的版本号；与 size() 一起在没有并发修改时读取，构成一个时间点
+    public long currentVersion() {
+        return version.get();
+    }
+
+    // 某个时间点按追加顺序的只读视图，遍历时逐行创建记录对象：只包含前 rows 行，
+    // 归还版本大于 asOfVersion 的记录显示为未归还，图书按 books 解析
+    public List<BorrowRecord> getAll(int rows, long asOfVersion, IntFunction<Book> books) {
+        return new AbstractList<BorrowRecord>() {
+            @Override
+            public BorrowRecord get(int index) {
+                Objects.checkIndex(index, rows);
+                long returnedVersion = storage.returnedVersion(index);
+                return record(index, books, returnedVersion != 0 && returnedVersion <= asOfVersion);
+            }
+
+            @Override
+            public int size() {
+                return rows;
+            }
+        };
+    }
+
+    public int size() {
+        return storage.size();
+    }
+
+    // 释放底层存储占用的资源（堆外映射文件）；之后不能再使用
+    public void close() throws IOException {
+        if (storage instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    // 应还日早于 asOf 的当前借阅，按应还日排列；只访问逾期的记录，不扫描历史
+    public List<BorrowRecord> findOverdue(LocalDate asOf) {
+        List<BorrowRecord> result = new ArrayList<>();
+        for (long key : activeByDueDay.headSet(asOf.toEpochDay() << 32)) {
+            result.add(record((int) key));
+        }
+        return result;
+    }
+
+    // 与 findOverdue 相同的顺序，但每凑满 batchSize 条就交给 action，不生成完整列表；返回逾期总数
+    public int forEachOverdue(LocalDate asOf, int batchSize, Consumer<List<BorrowRecord>> action) {
+        List<BorrowRecord> batch = new ArrayList<>(batchSize);
+        int total = 0;
+        for (long key : activeByDueDay.headSet(asOf.toEpochDay() << 32)) {
+            batch.add(record((int) key));
+            total++;
+            if (batch.size() == batchSize) {
+                action.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            action.accept(batch);
+        }
+        return total;
+    }
+
+    // 每本图书（按 ordinal）的累计借阅次数
+    public long[] countByBook(int bookCount) {
+        long[] counts = new long[bookCount];
+        storage.countByBook(storage.size(), counts);
+        return counts;
+    }
+
+    // 对每条未归还的历史记录调用一次，参数为成员ID（直接扫描列，不创建记录对象）
+    public void forEachActiveMember(IntConsumer action) {
+        int rows = storage.size();
+        for (int row = 0; row < rows; row++) {
+            if (storage.returnedVersion(row) == 0) {
+                action.accept(storage.memberId(row));
+            }
+        }
+    }
+
+    private int append(Book book, int memberId, LocalDate borrowDate, LocalDate dueDate, boolean returned) {
+        int row = storage.append(book.getOrdinal(), memberId,
+                (int) borrowDate.toEpochDay(), (int) dueDate.toEpochDay(), returned ? LOADED_VERSION : 0);
+        rowsByMember.computeIfAbsent(memberId, k -> new IntList()).add(row);
+        rowsByMonth.computeIfAbsent(monthOf(borrowDate), k -> new IntList()).add(row);
+        return row;
+    }
+
+    private long dueKey(int row) {
+        return ((long) storage.dueDay(row) << 32) | row;
+    }
+
+    private BorrowRecord record(int row) {
+        return record(row, booksByOrdinal, storage.returnedVersion(row) != 0);
+    }
+
+    private BorrowRecord record(int row, IntFunction<Book> books, boolean returned) {
+        return new BorrowRecord(books.apply(storage.bookOrdinal(row)), storage.memberId(row),
+                LocalDate.ofEpochDay(storage.borrowDay(row)), LocalDate.ofEpochDay(storage.dueDay(row)),
+                returned);
+    }
+
+    private static final class LoanKey {
+        private final int memberId;
+        private final int bookOrdinal;
+
+        LoanKey(int memberId, int bookOrdinal) {
+            this.memberId = memberId;
+            this.bookOrdinal = bookOrdinal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LoanKey)) return false;
+            LoanKey other = (LoanKey) o;
+            return memberId == other.memberId && bookOrdinal == other.bookOrdinal;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * memberId + bookOrdinal;
+        }
+    }
+}
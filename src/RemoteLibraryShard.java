@@ -0,0 +1,171 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// 通过本机回环连接访问另一个进程中的分片（LibraryShardServer），协议见 LibraryShardServer
+// 连接按需建立并复用：每个请求独占一个连接，多个线程的请求并发执行；出错的连接关闭后丢弃
+// 网络或分片出错时抛出 UncheckedIOException
+public class RemoteLibraryShard implements LibraryShard {
+    private final int port;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+    public RemoteLibraryShard(int port) {
+        this.port = port;
+    }
+
+    @Override
+    public void addBook(Book book) {
+        String line = Library.formatBook(book);
+        if (line != null) {
+            call(line);
+        }
+    }
+
+    @Override
+    public void addMember(Member member) {
+        call(Library.formatMember(member));
+    }
+
+    @Override
+    public Book getBook(String id) {
+        List<String> response = call("GET_BOOK," + id);
+        return response.isEmpty() ? null : parseBook(response.get(0));
+    }
+
+    @Override
+    public Member getMember(int id) {
+        List<String> response = call("GET_MEMBER," + id);
+        return response.isEmpty() ? null : Library.parseMember(response.get(0).split(","));
+    }
+
+    @Override
+    public LoanResult borrowBook(int memberId, String bookId) {
+        return parseLoanResult(call("BORROW," + bookId + "," + memberId), memberId, bookId);
+    }
+
+    @Override
+    public LoanResult returnBook(int memberId, String bookId) {
+        return parseLoanResult(call("RETURN," + bookId + "," + memberId), memberId, bookId);
+    }
+
+    @Override
+    public List<Book> searchBooksByTitle(String keyword) {
+        List<Book> books = new ArrayList<>();
+        for (String line : call("SEARCH_TITLE," + keyword)) {
+            books.add(parseBook(line));
+        }
+        return books;
+    }
+
+    @Override
+    public long getBookBorrowCount(String bookId) {
+        return Long.parseLong(call("BORROW_COUNT," + bookId).get(0));
+    }
+
+    @Override
+    public int getMemberActiveLoanCount(int memberId) {
+        return Integer.parseInt(call("ACTIVE_COUNT," + memberId).get(0));
+    }
+
+    @Override
+    public Map<Integer, Integer> getActiveLoanCounts() {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (String line : call("ACTIVE_COUNTS")) {
+            int comma = line.indexOf(',');
+            counts.put(Integer.parseInt(line.substring(0, comma)), Integer.parseInt(line.substring(comma + 1)));
+        }
+        return counts;
+    }
+
+    // 关闭空闲连接；分片进程本身不受影响
+    @Override
+    public void close() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.closeQuietly();
+        }
+    }
+
+    private List<String> call(String request) {
+        Connection connection = idle.poll();
+        try {
+            if (connection == null) {
+                connection = new Connection(port);
+            }
+            List<String> response = connection.call(request);
+            idle.offer(connection);
+            return response;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.closeQuietly();
+            }
+            throw new UncheckedIOException("分片 " + port + " 请求失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static LoanResult parseLoanResult(List<String> response, int memberId, String bookId) {
+        LoanStatus status = LoanStatus.valueOf(response.get(0));
+        Member member = null;
+        Book book = null;
+        for (String line : response.subList(1, response.size())) {
+            if (line.startsWith("MEMBER,")) {
+                member = Library.parseMember(line.split(","));
+            } else {
+                book = parseBook(line);
+            }
+        }
+        return new LoanResult(status, memberId, bookId, member, book);
+    }
+
+    // BOOK 行最后一个字段为分片上的可借数量
+    private static Book parseBook(String line) {
+        String[] parts = line.split(",");
+        Book book = Library.parseBook(parts);
+        if (book != null && parts.length > 6) {
+            book.setAvailableCopies(Integer.parseInt(parts[6]));
+        }
+        return book;
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        Connection(int port) throws IOException {
+            this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        List<String> call(String request) throws IOException {
+            out.write(request);
+            out.write('\n');
+            out.flush();
+
+            List<String> response = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.equals(LibraryShardServer.END)) {
+                    return response;
+                }
+                if (line.startsWith(LibraryShardServer.ERROR + ",")) {
+                    throw new IOException(line.substring(LibraryShardServer.ERROR.length() + 1));
+                }
+                response.add(line);
+            }
+            throw new EOFException("连接已关闭");
+        }
+
+        void closeQuietly() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// 数据目录：图书、成员、借阅记录分文件保存，借阅记录按借阅月份分片
+//   manifest.txt                  日志序号、代数和当前使用的文件（最后写入，原子替换）
+//   books-<代>.txt / members-<代>.txt
+//   counts-<代>.txt                每本图书的累计借阅次数（不加载全部历史时统计直接取自这里）
+//   records-<yyyy-MM>-<代>.txt      该月借出的记录
+//   journal.log                   上次保存之后的修改日志
+// 保存时只重写有变化的文件，新文件用新的代数命名：manifest 替换之前旧文件仍然有效，保存中途崩溃时
+// 目录仍是上一次保存的完整状态；manifest 替换之后删除不再引用的文件
+// 加载时可以跳过早于指定月数、且全部已归还的分片（冷历史），跳过的分片保持原样，之后的保存继续引用
+// 懒加载历史时分片只解析未归还的记录，已归还的记录留在文件中，按行首偏移索引；
+// 重写这样的分片时按偏移原样复制这些行。loadHistory 把跳过的分片和留在文件中的记录读入内存
+// 不是线程安全的：由 Library 在加载期间或持有保存锁时调用
+public class ShardedDataStore {
+    private static final String MANIFEST = "manifest.txt";
+    private static final String JOURNAL = "journal.log";
+    private static final String LEGACY_DATA_FILE = "library_data.txt";
+    private static final String SEQ_HEADER = "# journal-seq=";
+    private static final String GENERATION_HEADER = "# generation=";
+
+    private final Path dir;
+    private long generation;
+    private long currentSeq = -1;
+    private String booksFile;
+    private String membersFile;
+    private String countsFile;
+    private final List<Shard> shards = new ArrayList<>();
+
+    // manifest 中的一个分片文件；loaded 为 false 表示加载时跳过，记录不在内存中；
+    // returnedOffsets 不为 null 时，这些偏移处的已归还记录不在内存中
+    private static final class Shard {
+        final int month;
+        final String file;
+        final int rows;
+        final int active;
+        boolean loaded = true;
+        int[] returnedOffsets;
+
+        Shard(int month, String file, int rows, int active) {
+            this.month = month;
+            this.file = file;
+            this.rows = rows;
+            this.active = active;
+        }
+    }
+
+    public ShardedDataStore(Path dir) {
+        this.dir = dir;
+    }
+
+    // 数据目录：-Dlibrary.data.dir，其次环境变量 LIBRARY_DATA_DIR，都没有时为当前目录下的 data
+    public static Path resolveDir() {
+        String dir = System.getProperty("library.data.dir");
+        if (dir == null || dir.isEmpty()) {
+            dir = System.getenv("LIBRARY_DATA_DIR");
+        }
+        return Paths.get(dir == null || dir.isEmpty() ? "data" : dir);
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public Path journalFile() {
+        return dir.resolve(JOURNAL);
+    }
+
+    // 旧版的单文件数据（放在数据目录中的 library_data.txt），用于迁移
+    public Path legacyDataFile() {
+        return dir.resolve(LEGACY_DATA_FILE);
+    }
+
+    public boolean exists() {
+        return Files.exists(dir.resolve(MANIFEST));
+    }
+
+    // 按 manifest 读取全部文件，结果按 图书、成员、各月记录 的顺序合并；recentMonths > 0 时跳过
+    // 早于最近 recentMonths 个月且没有未归还记录的分片，lazyHistory 为 true 时分片中只读取未归还的记录。
+    // 按已读取的文件数报告进度，取消时抛出 CancellationException
+    public LibraryFileLoader load(int recentMonths, boolean lazyHistory, TaskProgress progress) throws IOException {
+        readManifest();
+        int cutoff = recentMonths > 0 ? RecordStore.monthOf(LocalDate.now()) - recentMonths + 1 : Integer.MIN_VALUE;
+        for (Shard shard : shards) {
+            shard.loaded = shard.month >= cutoff || shard.active > 0;
+        }
+
+        List<Shard> loading = new ArrayList<>();
+        for (Shard shard : shards) {
+            if (shard.loaded) {
+                loading.add(shard);
+            }
+        }
+        int total = loading.size() + 2;
+
+        LibraryFileLoader result = new LibraryFileLoader();
+        result.append(LibraryFileLoader.load(dir.resolve(booksFile)));
+        result.append(LibraryFileLoader.load(dir.resolve(membersFile)));
+        int done = 2;
+        for (Shard shard : loading) {
+            if (progress.isCancelled()) {
+                throw new CancellationException();
+            }
+            Path file = dir.resolve(shard.file);
+            if (lazyHistory) {
+                LibraryFileLoader part = LibraryFileLoader.loadActive(file);
+                int[] offsets = part.getReturnedOffsets();
+                shard.returnedOffsets = offsets == null || offsets.length == 0 ? null : offsets;
+                result.append(part);
+            } else {
+                result.append(LibraryFileLoader.load(file));
+            }
+            progress.update(++done, total);
+        }
+        result.setJournalSeq(currentSeq);
+        return result;
+    }
+
+    // 上次保存时每本图书（按ID）的累计借阅次数；manifest 中没有时（旧版本保存的目录）返回 null
+    public Map<String, Long> loadBorrowCounts() throws IOException {
+        if (countsFile == null) return null;
+
+        Map<String, Long> counts = new HashMap<>();
+        for (String line : Files.readAllLines(dir.resolve(countsFile), StandardCharsets.UTF_8)) {
+            String[] parts = line.split(",");
+            if (parts.length == 3 && parts[0].equals("COUNT")) {
+                counts.put(parts[1], Long.parseLong(parts[2]));
+            }
+        }
+        return counts;
+    }
+
+    // 是否还有不在内存中的借阅记录（跳过的分片或懒加载留在文件中的记录）
+    public boolean hasUnloadedHistory() {
+        for (Shard shard : shards) {
+            if (!shard.loaded || shard.returnedOffsets != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 逐个分片读取不在内存中的借阅记录并交给 consumer；consumer 返回后该分片才标记为已加载，
+    // 中途失败时尚未处理的分片保持原状态
+    public void loadHistory(Consumer<LibraryFileLoader> consumer) throws IOException {
+        for (Shard shard : shards) {
+            Path file = dir.resolve(shard.file);
+            if (!shard.loaded) {
+                consumer.accept(LibraryFileLoader.load(file));
+                shard.loaded = true;
+            } else if (shard.returnedOffsets != null) {
+                consumer.accept(LibraryFileLoader.loadLines(file, shard.returnedOffsets));
+                shard.returnedOffsets = null;
+            }
+        }
+    }
+
+    // 写入快照：图书、成员有变化时重写，借阅记录只重写 dirtyMonths 中的月份；本实例还没有加载或保存过
+    // 目录时（首次保存、从旧版单文件迁移）全部重写。跳过加载的分片不重写
+    public void save(LibrarySnapshot snapshot, Set<Integer> dirtyMonths, boolean booksDirty, boolean membersDirty,
+                     TaskProgress progress) throws IOException {
+        Files.createDirectories(dir);
+        boolean full = booksFile == null;
+        long next = generation + 1;
+        String newBooks = booksFile;
+        String newMembers = membersFile;
+        List<Shard> newShards = new ArrayList<>();
+
+        if (full || booksDirty) {
+            newBooks = "books-" + next + ".txt";
+            writeLines(newBooks, snapshot.getBooks().stream()
+                    .map(Library::formatBook).filter(Objects::nonNull).collect(Collectors.toList()));
+        }
+        if (full || membersDirty) {
+            newMembers = "members-" + next + ".txt";
+            writeLines(newMembers, snapshot.getMembers().stream()
+                    .map(Library::formatMember).collect(Collectors.toList()));
+        }
+
+        // 需要重写的月份：其中已加载的分片被新文件替换，跳过的分片保留
+        Set<Integer> rewrite = new TreeSet<>();
+        if (full) {
+            for (int month : snapshot.getMonths()) {
+                rewrite.add(month);
+            }
+        } else {
+            rewrite.addAll(dirtyMonths);
+        }
+        // 被替换的分片中留在文件里的已归还记录，原样复制到新文件开头
+        Map<Integer, List<String>> kept = new HashMap<>();
+        for (Shard shard : shards) {
+            if (!shard.loaded || !rewrite.contains(shard.month)) {
+                newShards.add(shard);
+            } else if (shard.returnedOffsets != null) {
+                kept.computeIfAbsent(shard.month, k -> new ArrayList<>())
+                        .addAll(readLines(dir.resolve(shard.file), shard.returnedOffsets));
+            }
+        }
+
+        int done = 0;
+        for (int month : rewrite) {
+            progress.update(done++, rewrite.size());
+            List<BorrowRecord> records = snapshot.getRecordsInMonth(month);
+            List<String> keptLines = kept.getOrDefault(month, Collections.emptyList());
+            if (records.isEmpty() && keptLines.isEmpty()) continue;
+
+            String file = "records-" + monthName(month) + "-" + next + ".txt";
+            List<String> lines = new ArrayList<>(keptLines.size() + records.size());
+            int[] keptOffsets = keptLines.isEmpty() ? null : new int[keptLines.size()];
+            int offset = 0;
+            for (String line : keptLines) {
+                keptOffsets[lines.size()] = offset;
+                offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                lines.add(line);
+            }
+            int active = 0;
+            for (BorrowRecord record : records) {
+                lines.add(Library.formatRecord(record));
+                if (!record.isReturned()) {
+                    active++;
+                }
+            }
+            writeLines(file, lines);
+            Shard shard = new Shard(month, file, lines.size(), active);
+            shard.returnedOffsets = keptOffsets;
+            newShards.add(shard);
+        }
+        newShards.sort(Comparator.comparingInt(shard -> shard.month));
+
+        // 借阅次数随每次借书变化，有任何修改时重写
+        String newCounts = countsFile;
+        if (full || booksDirty || !rewrite.isEmpty() || newCounts == null) {
+            newCounts = "counts-" + next + ".txt";
+            List<String> lines = new ArrayList<>();
+            for (Book book : snapshot.getBooks()) {
+                long count = snapshot.getBookBorrowCount(book);
+                if (count > 0) {
+                    lines.add("COUNT," + book.getId() + "," + count);
+                }
+            }
+            writeLines(newCounts, lines);
+        }
+
+        writeManifest(snapshot.getJournalSeq(), next, newBooks, newMembers, newCounts, newShards);
+        generation = next;
+        booksFile = newBooks;
+        membersFile = newMembers;
+        countsFile = newCounts;
+        shards.clear();
+        shards.addAll(newShards);
+        currentSeq = snapshot.getJournalSeq();
+        deleteUnreferenced();
+    }
+
+    private void readManifest() throws IOException {
+        shards.clear();
+        countsFile = null;
+        for (String line : Files.readAllLines(dir.resolve(MANIFEST), StandardCharsets.UTF_8)) {
+            if (line.startsWith(SEQ_HEADER)) {
+                currentSeq = Long.parseLong(line.substring(SEQ_HEADER.length()));
+            } else if (line.startsWith(GENERATION_HEADER)) {
+                generation = Long.parseLong(line.substring(GENERATION_HEADER.length()));
+            } else if (line.startsWith("BOOKS,")) {
+                booksFile = line.substring("BOOKS,".length());
+            } else if (line.startsWith("MEMBERS,")) {
+                membersFile = line.substring("MEMBERS,".length());
+            } else if (line.startsWith("COUNTS,")) {
+                countsFile = line.substring("COUNTS,".length());
+            } else if (line.startsWith("SHARD,")) {
+                String[] parts = line.split(",");
+                YearMonth month = YearMonth.parse(parts[1]);
+                shards.add(new Shard(month.getYear() * 12 + month.getMonthValue() - 1, parts[2],
+                        Integer.parseInt(parts[3]), Integer.parseInt(parts[4])));
+            }
+        }
+        if (booksFile == null || membersFile == null) {
+            throw new IOException("manifest 不完整: " + dir.resolve(MANIFEST));
+        }
+    }
+
+    private void writeManifest(long seq, long gen, String books, String members, String counts,
+                               List<Shard> newShards) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(SEQ_HEADER + seq);
+        lines.add(GENERATION_HEADER + gen);
+        lines.add("BOOKS," + books);
+        lines.add("MEMBERS," + members);
+        lines.add("COUNTS," + counts);
+        for (Shard shard : newShards) {
+            lines.add(String.format("SHARD,%s,%s,%d,%d", monthName(shard.month), shard.file, shard.rows, shard.active));
+        }
+        writeLines(MANIFEST, lines);
+    }
+
+    // 文件中从各偏移开始的行（不含换行）
+    private static List<String> readLines(Path file, int[] offsets) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        List<String> lines = new ArrayList<>(offsets.length);
+        for (int offset : offsets) {
+            int end = offset;
+            while (end < data.length && data[end] != '\n') end++;
+            lines.add(new String(data, offset, end - offset, StandardCharsets.UTF_8).trim());
+        }
+        return lines;
+    }
+
+    private void writeLines(String file, List<String> lines) throws IOException {
+        AtomicFile.write(dir.resolve(file), channel -> {
+            Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 1 << 16));
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+        });
+    }
+
+    // 删除数据文件中 manifest 不再引用的旧版本；删除失败不影响数据，下次保存再试
+    private void deleteUnreferenced() {
+        Set<String> referenced = new HashSet<>();
+        referenced.add(booksFile);
+        referenced.add(membersFile);
+        referenced.add(countsFile);
+        for (Shard shard : shards) {
+            referenced.add(shard.file);
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "{books,members,counts,records}-*.txt")) {
+            for (Path file : files) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("清理旧数据文件失败: " + e.getMessage());
+        }
+    }
+
+    private static String monthName(int month) {
+        return YearMonth.of(month / 12, month % 12 + 1).toString();
+    }
+}
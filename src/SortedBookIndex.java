@@ -0,0 +1,36 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+// 按某个字段排序的图书索引（跳表），字段相同时按ID排序
+// 插入 O(log n)；整体列出无需排序；分页读取为 O(log n + 页大小)
+public class SortedBookIndex {
+    private final NavigableSet<Book> books;
+
+    public SortedBookIndex(Function<Book, String> key) {
+        this.books = new ConcurrentSkipListSet<>(
+                Comparator.comparing(key).thenComparing(Book::getId));
+    }
+
+    public void add(Book book) {
+        books.add(book);
+    }
+
+    public void remove(Book book) {
+        books.remove(book);
+    }
+
+    public List<Book> list() {
+        return new ArrayList<>(books);
+    }
+
+    // 返回排在 after 之后的最多 pageSize 本图书；after 为 null 时从第一本开始
+    public List<Book> page(Book after, int pageSize) {
+        Iterator<Book> it = (after == null ? books : books.tailSet(after, false)).iterator();
+        List<Book> page = new ArrayList<>(pageSize);
+        while (page.size() < pageSize && it.hasNext()) {
+            page.add(it.next());
+        }
+        return page;
+    }
+}
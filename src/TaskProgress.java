@@ -0,0 +1,17 @@
+// 长时间操作的进度回调和取消标志
+public interface TaskProgress {
+    TaskProgress NONE = new TaskProgress() {
+        @Override
+        public void update(long done, long total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    void update(long done, long total);
+
+    boolean isCancelled();
+}
@@ -0,0 +1,34 @@
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 定时把指标快照以文本形式写到输出流（控制台或日志文件）
+public class TextMetricsExporter implements MetricsExporter {
+    private final PrintStream out;
+    private final long periodSeconds;
+    private ScheduledExecutorService scheduler;
+
+    public TextMetricsExporter(PrintStream out, long periodSeconds) {
+        this.out = out;
+        this.periodSeconds = periodSeconds;
+    }
+
+    @Override
+    public void start(LibraryMetrics metrics) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(() -> out.println(metrics.snapshot().toText()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}